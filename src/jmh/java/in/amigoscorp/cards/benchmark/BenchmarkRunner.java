@@ -0,0 +1,42 @@
+package in.amigoscorp.cards.benchmark;
+
+import java.io.File;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count with the allocation profiler, writing a JSON result
+ * per thread count that can be compared against the baseline of the previous release.
+ *
+ * <p>Arguments: the comma separated thread counts, the regular expression of the benchmarks to
+ * include and the directory to write the results to.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    String[] threadCounts = (args.length > 0 ? args[0] : "1,4,8").split(",");
+    String include = args.length > 1 ? args[1] : ".*";
+    File resultDirectory = new File(args.length > 2 ? args[2] : "target/jmh");
+    if (!resultDirectory.isDirectory() && !resultDirectory.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + resultDirectory);
+    }
+    for (String threadCount : threadCounts) {
+      int threads = Integer.parseInt(threadCount.trim());
+      Options options = new OptionsBuilder()
+          .include(include)
+          .threads(threads)
+          .addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.JSON)
+          .result(new File(resultDirectory, "result-" + threads + "-threads.json").getPath())
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package in.amigoscorp.cards.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of serializing the cards of a user into the body of {@code GET /cards/{userId}}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardJsonBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int cardsPerUser;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private List<Card> cards;
+
+  @Setup
+  public void setUp() {
+    cards = new ArrayList<>(cardsPerUser);
+    for (int i = 0; i < cardsPerUser; i++) {
+      cards.add(Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+          .cardNumber("b1b2c3d4e5f6a7b8c9d0e1f2a3b4c5d6e7f8a9b" + i)
+          .hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12).expiryYear(99)
+          .cardIssuer(CardIssuer.MASTERCARD).expired(false).build());
+    }
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(cards);
+  }
+}
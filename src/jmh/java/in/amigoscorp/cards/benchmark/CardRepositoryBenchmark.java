@@ -0,0 +1,74 @@
+package in.amigoscorp.cards.benchmark;
+
+import in.amigoscorp.cards.CardsApplication;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.repository.CardRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The cost of {@code findAllByUserId} against an in-memory H2 populated through the application
+ * itself, which is what every cache miss pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardRepositoryBenchmark {
+
+  @Param({"10000"})
+  public int users;
+  @Param({"3"})
+  public int cardsPerUser;
+  private ConfigurableApplicationContext context;
+  private CardRepository cardRepository;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(CardsApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties("logging.level.root=WARN", "cards.expiry-sweeper.enabled=false",
+            "cards.cache.snapshot.enabled=false")
+        .run();
+    cardRepository = context.getBean(CardRepository.class);
+    List<Card> cards = new ArrayList<>(users * cardsPerUser);
+    for (long userId = 0; userId < users; userId++) {
+      for (int i = 0; i < cardsPerUser; i++) {
+        cards.add(Card.builder().userId(userId).cardHolderName("Srinivas Giduthuri")
+            .cardNumber(userId + "-" + i).hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12)
+            .expiryYear(99).cardIssuer(CardIssuer.MASTERCARD).expired(false).build());
+      }
+    }
+    cardRepository.saveAll(cards);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<Card> findAllByUserId() {
+    return cardRepository.findAllByUserId(ThreadLocalRandom.current().nextLong(users));
+  }
+}
@@ -0,0 +1,76 @@
+package in.amigoscorp.cards.benchmark;
+
+import in.amigoscorp.cards.config.VirtualThreads;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The platform thread pool the requests are served on by default, sized as the Tomcat default of
+ * 200 threads, against a virtual thread per request. Each operation is a burst of concurrent
+ * requests that each block, as on a data store query or an issuer call, and completes once all of
+ * them are served. The sampled times give the p99 latency of a burst.
+ *
+ * <p>Only the executors are measured, with a sleep standing in for the request; the load harness
+ * compares both modes through the actual endpoints. The {@code virtual} executor requires running
+ * on Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+  @Param({"platform", "virtual"})
+  public String executor;
+  @Param({"1000"})
+  public int concurrentRequests;
+  @Param({"2"})
+  public int blockingMillis;
+
+  private ExecutorService executorService;
+
+  @Setup
+  public void setUp() {
+    executorService = "virtual".equals(executor)
+        ? VirtualThreads.newVirtualThreadPerTaskExecutor("benchmark-")
+        : Executors.newFixedThreadPool(200);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Benchmark
+  public void burst() {
+    CompletableFuture<?>[] requests = new CompletableFuture<?>[concurrentRequests];
+    for (int i = 0; i < concurrentRequests; i++) {
+      requests[i] = CompletableFuture.runAsync(this::serve, executorService);
+    }
+    CompletableFuture.allOf(requests).join();
+  }
+
+  private void serve() {
+    try {
+      Thread.sleep(blockingMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package in.amigoscorp.cards.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the cards cache itself on a hit and on a miss, with a loader that answers from
+ * memory so that the data store does not drown the cache overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardsCacheBenchmark {
+
+  @Param({"10000"})
+  public int users;
+  @Param({"3"})
+  public int cardsPerUser;
+  private LoadingCache<Long, UserCards> cache;
+
+  @Setup
+  public void setUp() {
+    cache = CardsCache.build(new CardsCacheProperties(), new CacheLoader<Long, UserCards>() {
+      @Override
+      public UserCards load(Long userId) {
+        List<Card> cards = new ArrayList<>(cardsPerUser);
+        for (int i = 0; i < cardsPerUser; i++) {
+          cards.add(Card.builder().userId(userId).cardNumber(userId + "-" + i)
+              .hashedCardNumber("XXXXXXXXXXXX4444").cardIssuer(CardIssuer.MASTERCARD)
+              .expiryMonth(12).expiryYear(99).expired(false).build());
+        }
+        return UserCards.of(cards);
+      }
+    });
+    for (long userId = 0; userId < users; userId++) {
+      cache.getUnchecked(userId);
+    }
+  }
+
+  @Benchmark
+  public UserCards hit() {
+    return cache.getUnchecked(ThreadLocalRandom.current().nextLong(users));
+  }
+
+  @Benchmark
+  public UserCards miss() {
+    Long userId = ThreadLocalRandom.current().nextLong(users);
+    cache.invalidate(userId);
+    return cache.getUnchecked(userId);
+  }
+}
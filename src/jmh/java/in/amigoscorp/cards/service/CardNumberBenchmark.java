@@ -0,0 +1,56 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.codec.CardNumberCodec;
+import in.amigoscorp.cards.codec.CardNumberCodecProperties;
+import in.amigoscorp.cards.codec.EncodedCardNumber;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost of securing a card number: masking it for display and hashing it into the card id. The
+ * {@code legacy} benchmark is the former string based masking and unkeyed SHA-1, kept as the
+ * baseline of the {@link CardNumberCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberBenchmark {
+
+  private final String cardNumber = "5555555555554444";
+  private CardNumberCodec codec;
+
+  @Setup
+  public void setUp() {
+    CardNumberCodecProperties properties = new CardNumberCodecProperties();
+    properties.setHmacKey("benchmark-key");
+    codec = new CardNumberCodec(properties);
+  }
+
+  @Benchmark
+  public void legacy(Blackhole blackhole) {
+    String substring = StringUtils.substring(cardNumber, 0, cardNumber.length() - 4);
+    String hash = StringUtils.repeat("X", substring.length());
+    blackhole.consume(StringUtils.replace(cardNumber, substring, hash));
+    blackhole.consume(DigestUtils.shaHex(cardNumber));
+  }
+
+  @Benchmark
+  public EncodedCardNumber encode() {
+    return codec.encode(cardNumber.toCharArray());
+  }
+}
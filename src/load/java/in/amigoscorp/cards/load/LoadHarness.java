@@ -0,0 +1,446 @@
+package in.amigoscorp.cards.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import in.amigoscorp.cards.CardsApplication;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.service.CardNumberFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds the in-memory H2 of the application with a large dataset, boots the application on a
+ * random port and drives a mix of reads and writes against its endpoints for a set duration. The
+ * throughput, the latency percentiles, the GC time and the heap usage are written as JSON.
+ *
+ * <p>The number of cards of each user follows a Zipfian distribution, most users having a single
+ * card, and the users read and written follow a scrambled Zipfian distribution, a few hot users
+ * taking most of the requests. The driver and the application share the JVM, so the GC and heap
+ * figures include the driver, whose share is small next to the application.
+ *
+ * <p>Arguments, all optional, as {@code --name=value}:
+ * <ul>
+ *   <li>{@code cards} - the number of cards seeded, {@value #DEFAULT_CARDS} by default</li>
+ *   <li>{@code max-cards-per-user} - the number of cards of the users with the most cards</li>
+ *   <li>{@code theta} - the skew of the distributions, between 0 and 1 exclusive</li>
+ *   <li>{@code threads} - the number of concurrent clients</li>
+ *   <li>{@code mix} - the weight of each operation, {@code read:90,add:8,delete:2} by default</li>
+ *   <li>{@code rate} - the total operations per second, {@code 0} to send them back to back.
+ *   With a rate, the latency is measured from the intended start of every operation, so a stall
+ *   of the application counts against every operation it delayed.</li>
+ *   <li>{@code warmup}, {@code duration} and {@code interval} - ISO-8601 durations of the warm-up
+ *   left out of the report, of the measurement and between two progress lines</li>
+ *   <li>{@code virtual-threads} - whether the application serves the requests on virtual
+ *   threads, {@code false} by default, which requires Java 21 or later</li>
+ *   <li>{@code report} - the file the JSON report is written to</li>
+ * </ul>
+ */
+public final class LoadHarness {
+
+  private static final long DEFAULT_CARDS = 2_000_000;
+  private static final int SEED_BATCH_SIZE = 10_000;
+  private static final String[] OPERATIONS = {"read", "add", "delete"};
+  private static final int READ = 0;
+  private static final int ADD = 1;
+  private static final int DELETE = 2;
+
+  private final Map<String, String> options;
+  private final Recorder[] recorders = new Recorder[OPERATIONS.length];
+  private final Histogram[] totals = new Histogram[OPERATIONS.length];
+  private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+  private final int[] weights = new int[OPERATIONS.length];
+  private ZipfianGenerator userGenerator;
+  /**
+   * The user of every seeded card, by the index in its card number.
+   */
+  private long[] cardUsers;
+  private String baseUrl;
+  private long lastCollectedAt;
+  private volatile boolean running = true;
+
+  private LoadHarness(Map<String, String> options) {
+    this.options = options;
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      recorders[i] = new Recorder(3);
+      totals[i] = new Histogram(3);
+      errors[i] = new LongAdder();
+    }
+    for (String weight : option("mix", "read:90,add:8,delete:2").split(",")) {
+      String[] parts = weight.split(":");
+      weights[operation(parts[0].trim())] = Integer.parseInt(parts[1].trim());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Expected --name=value, got " + arg);
+      }
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    new LoadHarness(options).run();
+  }
+
+  private void run() throws Exception {
+    int threads = Integer.parseInt(option("threads", "16"));
+    // Keeps a connection alive per client instead of the default five.
+    System.setProperty("http.maxConnections", Integer.toString(threads));
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(CardsApplication.class)
+        .properties("server.port=0", "logging.level.root=WARN",
+            "cards.cache.snapshot.enabled=false", "cards.codec.hmac-key=load-test-key",
+            "cards.virtual-threads.enabled=" + option("virtual-threads", "false"))
+        .run();
+    try {
+      Map<String, Object> report = new LinkedHashMap<>();
+      report.put("options", options);
+      report.put("dataset", seed(context.getBean(DataSource.class)));
+      // The seeded cards bypassed the filter built on startup.
+      context.getBean(CardNumberFilter.class).rebuild();
+      baseUrl = "http://localhost:" + context.getEnvironment()
+          .getRequiredProperty("local.server.port");
+      drive(threads, report);
+    } finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Inserts the cards straight into the table, bypassing the application.
+   */
+  private Map<String, Object> seed(DataSource dataSource) {
+    long cards = Long.parseLong(option("cards", Long.toString(DEFAULT_CARDS)));
+    int maxCardsPerUser = Integer.parseInt(option("max-cards-per-user", "20"));
+    ZipfianGenerator cardsPerUser = new ZipfianGenerator(maxCardsPerUser, theta(), false);
+    Random random = new Random(42);
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    String insert = "insert into card (card_number, user_id, card_holder_name, hashed_card_number,"
+        + " expiry_month, expiry_year, card_issuer, expired) values (?, ?, ?, ?, ?, ?, ?, ?)";
+    long start = System.nanoTime();
+    cardUsers = new long[(int) cards];
+    List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+    long userId = 0;
+    int index = 0;
+    while (index < cards) {
+      long count = Math.min(cardsPerUser.next(random) + 1, cards - index);
+      for (int i = 0; i < count; i++, index++) {
+        cardUsers[index] = userId;
+        batch.add(new Object[]{"seed-" + index, userId, "Load Test " + userId,
+            "XXXXXXXXXXXX4444", 1 + random.nextInt(12), 30 + random.nextInt(10),
+            CardIssuer.MASTERCARD.ordinal(), false});
+        if (batch.size() == SEED_BATCH_SIZE) {
+          jdbcTemplate.batchUpdate(insert, batch);
+          batch.clear();
+        }
+      }
+      userId++;
+    }
+    jdbcTemplate.batchUpdate(insert, batch);
+    userGenerator = new ZipfianGenerator(userId, theta(), true);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Seeded %d cards of %d users in %.1f s%n", cards, userId, seconds);
+
+    Map<String, Object> dataset = new LinkedHashMap<>();
+    dataset.put("cards", cards);
+    dataset.put("users", userId);
+    dataset.put("seedSeconds", seconds);
+    return dataset;
+  }
+
+  private void drive(int threads, Map<String, Object> report) throws Exception {
+    Duration warmup = Duration.parse(option("warmup", "PT15S"));
+    Duration duration = Duration.parse(option("duration", "PT1M"));
+    Duration interval = Duration.parse(option("interval", "PT10S"));
+    double rate = Double.parseDouble(option("rate", "0"));
+    long periodNanos = rate > 0 ? (long) (threads * 1e9 / rate) : 0;
+
+    List<Thread> clients = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread client = new Thread(() -> drive(periodNanos), "load-client-" + i);
+      client.setDaemon(true);
+      client.start();
+      clients.add(client);
+    }
+    Thread.sleep(warmup.toMillis());
+    for (Recorder recorder : recorders) {
+      recorder.reset();
+    }
+    long[] warmupErrors = new long[errors.length];
+    for (int i = 0; i < errors.length; i++) {
+      warmupErrors[i] = errors[i].sum();
+    }
+    long gcCount = gcCount();
+    long gcMillis = gcMillis();
+    ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+
+    List<Map<String, Object>> intervals = new ArrayList<>();
+    long start = System.nanoTime();
+    lastCollectedAt = start;
+    long end = start + duration.toNanos();
+    long now;
+    while ((now = System.nanoTime()) < end) {
+      Thread.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(Math.min(interval.toNanos(),
+          end - now))));
+      intervals.add(collect((System.nanoTime() - start) / 1e9));
+    }
+    running = false;
+    for (Thread client : clients) {
+      client.join();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    collect(seconds);
+
+    Map<String, Object> operations = new LinkedHashMap<>();
+    long total = 0;
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      Map<String, Object> operation = new LinkedHashMap<>();
+      operation.put("count", totals[i].getTotalCount());
+      operation.put("errors", errors[i].sum() - warmupErrors[i]);
+      operation.put("throughput", totals[i].getTotalCount() / seconds);
+      operation.put("latencyMillis", latencies(totals[i]));
+      operations.put(OPERATIONS[i], operation);
+      total += totals[i].getTotalCount();
+    }
+    Map<String, Object> gc = new LinkedHashMap<>();
+    gc.put("count", gcCount() - gcCount);
+    gc.put("timeMillis", gcMillis() - gcMillis);
+    gc.put("timeRatio", (gcMillis() - gcMillis) / (seconds * 1000));
+    report.put("threads", threads);
+    report.put("durationSeconds", seconds);
+    report.put("throughput", total / seconds);
+    report.put("operations", operations);
+    report.put("gc", gc);
+    report.put("heap", heap());
+    report.put("intervals", intervals);
+
+    Path path = Paths.get(option("report", "target/load/report.json"));
+    if (path.toAbsolutePath().getParent() != null) {
+      Files.createDirectories(path.toAbsolutePath().getParent());
+    }
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+    System.out.printf("%.0f operations per second, the report is written to %s%n",
+        total / seconds, path.toAbsolutePath());
+  }
+
+  /**
+   * Sends the operations until the harness stops, every {@code periodNanos} when positive.
+   */
+  private void drive(long periodNanos) {
+    Random random = ThreadLocalRandom.current();
+    int totalWeight = 0;
+    for (int weight : weights) {
+      totalWeight += weight;
+    }
+    long intended = System.nanoTime();
+    while (running) {
+      if (periodNanos > 0) {
+        intended += periodNanos;
+        long delay = intended - System.nanoTime();
+        if (delay > 0) {
+          LockSupport.parkNanos(delay);
+        }
+      } else {
+        intended = System.nanoTime();
+      }
+      int pick = random.nextInt(totalWeight);
+      int operation = 0;
+      while (pick >= weights[operation]) {
+        pick -= weights[operation++];
+      }
+      try {
+        int status = send(operation, random);
+        if (status >= 400) {
+          errors[operation].increment();
+        }
+      } catch (IOException e) {
+        errors[operation].increment();
+      }
+      recorders[operation].recordValue(
+          Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended)));
+    }
+  }
+
+  private int send(int operation, Random random) throws IOException {
+    long userId = userGenerator.next(random);
+    switch (operation) {
+      case READ:
+        return request("GET", "/cards/" + userId, null);
+      case ADD:
+        return request("POST", "/card", "{\"userId\":" + userId
+            + ",\"cardHolderName\":\"Load Test\",\"cardNumber\":\"" + cardNumber(random)
+            + "\",\"expiryMonth\":12,\"expiryYear\":99,\"cvv\":123,\"cardIssuer\":\"MASTERCARD\"}");
+      case DELETE:
+        int index = random.nextInt(cardUsers.length);
+        return request("DELETE", "/card", "{\"userId\":" + cardUsers[index]
+            + ",\"cardNumber\":\"seed-" + index + "\"}");
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+  }
+
+  private int request(String method, String path, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setFixedLengthStreamingMode(bytes.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(bytes);
+      }
+    }
+    int status = connection.getResponseCode();
+    // Reading the whole response lets the connection be reused.
+    try (InputStream in = status >= 400 ? connection.getErrorStream()
+        : connection.getInputStream()) {
+      if (in != null) {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) >= 0) {
+          // Discarded.
+        }
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Adds the latencies recorded since the previous call to the totals.
+   *
+   * @return the throughput and the latencies of the interval
+   */
+  private Map<String, Object> collect(double elapsedSeconds) {
+    Histogram interval = new Histogram(3);
+    for (int i = 0; i < recorders.length; i++) {
+      Histogram histogram = recorders[i].getIntervalHistogram();
+      totals[i].add(histogram);
+      interval.add(histogram);
+    }
+    long now = System.nanoTime();
+    double seconds = (now - lastCollectedAt) / 1e9;
+    lastCollectedAt = now;
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("elapsedSeconds", elapsedSeconds);
+    summary.put("throughput", seconds > 0 ? interval.getTotalCount() / seconds : 0);
+    summary.put("latencyMillis", latencies(interval));
+    summary.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+        .getUsed());
+    System.out.printf("%6.0f s %8.0f ops/s p99 %8.2f ms%n", elapsedSeconds,
+        summary.get("throughput"), interval.getValueAtPercentile(99) / 1000.0);
+    return summary;
+  }
+
+  private static Map<String, Object> latencies(Histogram histogram) {
+    Map<String, Object> latencies = new LinkedHashMap<>();
+    latencies.put("mean", histogram.getMean() / 1000);
+    latencies.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+    latencies.put("p90", histogram.getValueAtPercentile(90) / 1000.0);
+    latencies.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+    latencies.put("p999", histogram.getValueAtPercentile(99.9) / 1000.0);
+    latencies.put("max", histogram.getMaxValue() / 1000.0);
+    return latencies;
+  }
+
+  private static Map<String, Object> heap() {
+    MemoryUsage usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    Map<String, Object> heap = new LinkedHashMap<>();
+    heap.put("usedBytes", usage.getUsed());
+    heap.put("committedBytes", usage.getCommitted());
+    heap.put("maxBytes", usage.getMax());
+    heap.put("peakUsedBytes", peak);
+    return heap;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, collector.getCollectionTime());
+    }
+    return millis;
+  }
+
+  /**
+   * @return a random MasterCard number with a valid check digit
+   */
+  private static String cardNumber(Random random) {
+    char[] digits = new char[16];
+    "5555".getChars(0, 4, digits, 0);
+    for (int i = 4; i < 15; i++) {
+      digits[i] = (char) ('0' + random.nextInt(10));
+    }
+    int sum = 0;
+    for (int i = 14, position = 0; i >= 0; i--, position++) {
+      int digit = digits[i] - '0';
+      if (position % 2 == 0) {
+        digit *= 2;
+        if (digit > 9) {
+          digit -= 9;
+        }
+      }
+      sum += digit;
+    }
+    digits[15] = (char) ('0' + (10 - sum % 10) % 10);
+    return new String(digits);
+  }
+
+  private double theta() {
+    return Double.parseDouble(option("theta", "0.99"));
+  }
+
+  private String option(String name, String defaultValue) {
+    String value = options.get(name);
+    return value != null ? value : defaultValue;
+  }
+
+  private static int operation(String name) {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      if (OPERATIONS[i].equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown operation " + name);
+  }
+}
@@ -0,0 +1,71 @@
+package in.amigoscorp.cards.load;
+
+import java.util.Random;
+
+/**
+ * Draws the items {@code [0, items)} following a Zipfian distribution, the first items being the
+ * most popular ones, after Gray et al., "Quickly Generating Billion-Record Synthetic Databases".
+ * When scrambled, the popular items are spread over the whole range instead.
+ */
+final class ZipfianGenerator {
+
+  private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final long items;
+  private final double theta;
+  private final double alpha;
+  private final double zetaN;
+  private final double eta;
+  private final boolean scrambled;
+
+  /**
+   * @param items     the number of items
+   * @param theta     the skew, from {@code 0} exclusive for a nearly uniform distribution to
+   *                  {@code 1} exclusive for the most skewed one
+   * @param scrambled whether the popular items are spread over the range
+   */
+  ZipfianGenerator(long items, double theta, boolean scrambled) {
+    if (items < 1 || theta <= 0 || theta >= 1) {
+      throw new IllegalArgumentException("Unexpected items " + items + " or theta " + theta);
+    }
+    this.items = items;
+    this.theta = theta;
+    this.alpha = 1 / (1 - theta);
+    this.zetaN = zeta(items, theta);
+    this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    this.scrambled = scrambled;
+  }
+
+  long next(Random random) {
+    double u = random.nextDouble();
+    double uz = u * zetaN;
+    long item;
+    if (uz < 1) {
+      item = 0;
+    } else if (uz < 1 + Math.pow(0.5, theta)) {
+      item = 1;
+    } else {
+      item = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+    }
+    item = Math.min(item, items - 1);
+    return scrambled ? Math.floorMod(fnv(item), items) : item;
+  }
+
+  private static double zeta(long items, double theta) {
+    double sum = 0;
+    for (long i = 1; i <= items; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+
+  private static long fnv(long value) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < Long.BYTES; i++) {
+      hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+      value >>>= 8;
+    }
+    return hash;
+  }
+}
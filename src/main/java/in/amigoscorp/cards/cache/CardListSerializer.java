@@ -0,0 +1,133 @@
+package in.amigoscorp.cards.cache;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary form of the {@link UserCards}, used to keep them outside the heap. Each card is
+ * written as a bit set of its non-null fields followed by those fields only, the issuer as its
+ * ordinal and the expired flag as a bit. The CVV is never written.
+ */
+final class CardListSerializer {
+
+  private static final byte FORMAT = 1;
+  private static final CardIssuer[] ISSUERS = CardIssuer.values();
+
+  private static final int USER_ID = 1;
+  private static final int CARD_HOLDER_NAME = 1 << 1;
+  private static final int CARD_NUMBER = 1 << 2;
+  private static final int HASHED_CARD_NUMBER = 1 << 3;
+  private static final int EXPIRY_MONTH = 1 << 4;
+  private static final int EXPIRY_YEAR = 1 << 5;
+  private static final int CARD_ISSUER = 1 << 6;
+  private static final int EXPIRED = 1 << 7;
+
+  private CardListSerializer() {
+  }
+
+  static byte[] serialize(UserCards userCards) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 64 * userCards.size());
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(FORMAT);
+      out.writeLong(userCards.getVersion());
+      out.writeInt(userCards.size());
+      for (Card card : userCards.getCards()) {
+        write(card, out);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @throws IllegalArgumentException when the bytes are not a serialized {@link UserCards}
+   */
+  static UserCards deserialize(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (in.readByte() != FORMAT) {
+        throw new IllegalArgumentException("Unknown format of the serialized cards.");
+      }
+      long version = in.readLong();
+      int size = in.readInt();
+      if (size < 0) {
+        throw new IllegalArgumentException("Negative number of serialized cards.");
+      }
+      List<Card> cards = new ArrayList<>(Math.min(size, bytes.length));
+      for (int i = 0; i < size; i++) {
+        cards.add(read(in));
+      }
+      return UserCards.of(version, cards);
+    } catch (IOException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Malformed serialized cards.", e);
+    }
+  }
+
+  private static void write(Card card, DataOutputStream out) throws IOException {
+    int fields = (card.getUserId() != null ? USER_ID : 0)
+        | (card.getCardHolderName() != null ? CARD_HOLDER_NAME : 0)
+        | (card.getCardNumber() != null ? CARD_NUMBER : 0)
+        | (card.getHashedCardNumber() != null ? HASHED_CARD_NUMBER : 0)
+        | (card.getExpiryMonth() != null ? EXPIRY_MONTH : 0)
+        | (card.getExpiryYear() != null ? EXPIRY_YEAR : 0)
+        | (card.getCardIssuer() != null ? CARD_ISSUER : 0)
+        | (card.isExpired() ? EXPIRED : 0);
+    out.writeByte(fields);
+    if (card.getUserId() != null) {
+      out.writeLong(card.getUserId());
+    }
+    if (card.getCardHolderName() != null) {
+      out.writeUTF(card.getCardHolderName());
+    }
+    if (card.getCardNumber() != null) {
+      out.writeUTF(card.getCardNumber());
+    }
+    if (card.getHashedCardNumber() != null) {
+      out.writeUTF(card.getHashedCardNumber());
+    }
+    if (card.getExpiryMonth() != null) {
+      out.writeInt(card.getExpiryMonth());
+    }
+    if (card.getExpiryYear() != null) {
+      out.writeInt(card.getExpiryYear());
+    }
+    if (card.getCardIssuer() != null) {
+      out.writeByte(card.getCardIssuer().ordinal());
+    }
+  }
+
+  private static Card read(DataInputStream in) throws IOException {
+    int fields = in.readUnsignedByte();
+    Card.CardBuilder card = Card.builder();
+    if ((fields & USER_ID) != 0) {
+      card.userId(in.readLong());
+    }
+    if ((fields & CARD_HOLDER_NAME) != 0) {
+      card.cardHolderName(in.readUTF());
+    }
+    if ((fields & CARD_NUMBER) != 0) {
+      card.cardNumber(in.readUTF());
+    }
+    if ((fields & HASHED_CARD_NUMBER) != 0) {
+      card.hashedCardNumber(in.readUTF());
+    }
+    if ((fields & EXPIRY_MONTH) != 0) {
+      card.expiryMonth(in.readInt());
+    }
+    if ((fields & EXPIRY_YEAR) != 0) {
+      card.expiryYear(in.readInt());
+    }
+    if ((fields & CARD_ISSUER) != 0) {
+      card.cardIssuer(ISSUERS[in.readUnsignedByte()]);
+    }
+    return card.expired((fields & EXPIRED) != 0).build();
+  }
+}
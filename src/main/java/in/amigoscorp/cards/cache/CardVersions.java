@@ -0,0 +1,73 @@
+package in.amigoscorp.cards.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+
+/**
+ * The version of the cards of each user, which changes on every change to them and is served as
+ * the entity tag of the cards. A version is never reused for different cards: every change takes
+ * the next value of a single counter, and the users not tracked share a floor that is above every
+ * version handed out before they were dropped.
+ *
+ * <p>At most {@link CardsCacheProperties#getMaximumTrackedVersions()} users are tracked. Beyond
+ * that, the floor is raised and the users whose version is below it are dropped, so their entity
+ * tags change once without their cards changing.
+ *
+ * <p>The versions start over on every start of the application, hence the entity tags carry the
+ * start time as an epoch.
+ */
+@Component
+public class CardVersions {
+
+  private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+  private final AtomicLong counter = new AtomicLong();
+  private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+  private final int maximumTrackedVersions;
+  private final AtomicLong floor = new AtomicLong();
+
+  public CardVersions(CardsCacheProperties properties) {
+    this.maximumTrackedVersions = properties.getMaximumTrackedVersions();
+  }
+
+  /**
+   * @param userId an unique user identifier
+   * @return the strong entity tag of the current cards of the user, without the quotes
+   */
+  public String eTag(Long userId) {
+    return epoch + "-" + get(userId);
+  }
+
+  /**
+   * @param userId an unique user identifier
+   * @return the current version of the cards of the user
+   */
+  long get(Long userId) {
+    Long version = versions.get(userId);
+    return version != null ? version : floor.get();
+  }
+
+  /**
+   * Moves the cards of the user to a new version. Must be called once the change is visible to
+   * the readers of the cards, so that a reader never pairs the new version with the old cards.
+   *
+   * @param userId an unique user identifier
+   */
+  void bump(Long userId) {
+    versions.put(userId, counter.incrementAndGet());
+    if (versions.size() > maximumTrackedVersions) {
+      dropUntracked();
+    }
+  }
+
+  /**
+   * Raises the floor above every version handed out so far and only then drops the users below
+   * it, so that a user is never read at a version it had before its last change.
+   */
+  private void dropUntracked() {
+    long newFloor = counter.incrementAndGet();
+    floor.accumulateAndGet(newFloor, Math::max);
+    versions.entrySet().removeIf(entry -> entry.getValue() < newFloor);
+  }
+}
@@ -0,0 +1,407 @@
+package in.amigoscorp.cards.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.journal.CacheOutcome;
+import in.amigoscorp.cards.journal.RequestJournal;
+import in.amigoscorp.cards.repository.CardRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded cache of the cards of each user, loaded from the data store on a miss. The size,
+ * weight and expiry limits come from {@link CardsCacheProperties} and the cache statistics are
+ * published as {@code cache.*} metrics tagged with {@code cache=cardsCache}, along with its hit
+ * ratio as {@code cards.cache.hit.ratio}.
+ *
+ * <p>The cache has two tiers. The cards read the most are kept as objects on the heap, in front of
+ * a larger {@link OffHeapCardStore} that keeps the serialized cards of many more users outside the
+ * heap. The second tier is written through on every load and patch, so a miss on the heap is
+ * served from it before falling back to the data store. Its statistics are published as {@code
+ * cache.*} metrics tagged with {@code cache=cardsCacheOffHeap}.
+ *
+ * <p>Every write bumps the {@link CardVersions} of the user, whether the user is cached or not.
+ * Writes patch the cached {@link UserCards} in place instead of reloading them. A patch of a
+ * user whose cards are being loaded waits for that load and applies on top of it, and a patch of
+ * a user who is not cached is a no-op, so at most one load per user is ever in flight.
+ *
+ * <p>A bulk read loads all the users that are not cached together, with one query per {@link
+ * CardsCacheProperties#getLoadAllChunkSize()} users. Such a load is not waited for by the patches,
+ * hence the cards of a user that changed while they were read are discarded once stored, so that
+ * the next read loads them again.
+ *
+ * <p>The reads served from the second tier or the data store are recorded in the {@link
+ * RequestJournal} event of the request.
+ */
+@Component
+public class CardsCache {
+
+  static final String CACHE_NAME = "cardsCache";
+  static final String OFF_HEAP_CACHE_NAME = "cardsCacheOffHeap";
+
+  private final Logger log = LoggerFactory.getLogger(CardsCache.class);
+  private final OffHeapCardStore offHeap;
+  private final CardVersions cardVersions;
+  private final RequestJournal requestJournal;
+  private final LoadingCache<Long, UserCards> cardsCache;
+
+  public CardsCache(CardRepository cardRepository, CardVersions cardVersions,
+      CardsCacheProperties properties, RequestJournal requestJournal,
+      MeterRegistry meterRegistry) {
+    this.cardVersions = cardVersions;
+    this.requestJournal = requestJournal;
+    long offHeapCapacity = properties.getOffHeapCapacity().toBytes();
+    if (offHeapCapacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("cards.cache.off-heap-capacity must be below 2GB.");
+    }
+    offHeap = offHeapCapacity > 0 ? new OffHeapCardStore((int) offHeapCapacity) : null;
+    cardsCache = build(properties, new CacheLoader<Long, UserCards>() {
+      @Override
+      public UserCards load(Long userId) {
+        UserCards stored = fromOffHeap(userId);
+        if (stored != null) {
+          return stored;
+        }
+        requestJournal.cache(CacheOutcome.MISS);
+        return toOffHeap(userId, UserCards.of(cardRepository.findAllByUserId(userId)));
+      }
+
+      @Override
+      public Map<Long, UserCards> loadAll(Iterable<? extends Long> userIds) {
+        Map<Long, UserCards> loaded = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+          UserCards stored = fromOffHeap(userId);
+          if (stored != null) {
+            loaded.put(userId, stored);
+          } else {
+            missing.add(userId);
+          }
+        }
+        Map<Long, List<Card>> cardsByUser = new HashMap<>();
+        for (List<Long> chunk : Lists.partition(missing, properties.getLoadAllChunkSize())) {
+          requestJournal.cache(CacheOutcome.MISS);
+          for (Card card : cardRepository.findAllByUserIdIn(chunk)) {
+            cardsByUser.computeIfAbsent(card.getUserId(), userId -> new ArrayList<>()).add(card);
+          }
+        }
+        // Every requested user is cached, including the ones without any card.
+        for (Long userId : missing) {
+          loaded.put(userId, toOffHeap(userId, UserCards.of(
+              cardsByUser.getOrDefault(userId, Collections.<Card>emptyList()))));
+        }
+        return loaded;
+      }
+    });
+    GuavaCacheMetrics.monitor(meterRegistry, cardsCache, CACHE_NAME);
+    Gauge.builder("cards.cache.hit.ratio", cardsCache, cache -> cache.stats().hitRate())
+        .description("The ratio of the reads served from the cache since it started")
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+    if (offHeap != null) {
+      monitorOffHeap(meterRegistry);
+    }
+  }
+
+  /**
+   * Get the cards of the user, loading them from the data store when they are not cached.
+   *
+   * @param userId an unique user identifier
+   * @return a list of cards information
+   * @throws ExecutionException when the cards could not be loaded from the data store
+   */
+  public List<Card> get(Long userId) throws ExecutionException {
+    recordHit(userId);
+    return read(cardsCache.get(userId)).getCards();
+  }
+
+  /**
+   * Get the cards of the user along with their version, loading them from the data store when
+   * they are not cached.
+   *
+   * @param userId an unique user identifier
+   * @return the cards of the user
+   * @throws ExecutionException when the cards could not be loaded from the data store
+   */
+  public UserCards getUserCards(Long userId) throws ExecutionException {
+    recordHit(userId);
+    return read(cardsCache.get(userId));
+  }
+
+  /**
+   * Get the cards of all the users, loading the ones that are not cached together from the data
+   * store.
+   *
+   * @param userIds the unique user identifiers
+   * @return the cards of each user, in the order of the given users
+   * @throws ExecutionException when the cards could not be loaded from the data store
+   */
+  public Map<Long, List<Card>> getAll(Collection<Long> userIds) throws ExecutionException {
+    for (Long userId : userIds) {
+      if (recordHit(userId)) {
+        break;
+      }
+    }
+    Map<Long, Long> versions = new HashMap<>();
+    for (Long userId : userIds) {
+      versions.put(userId, cardVersions.get(userId));
+    }
+    Map<Long, UserCards> cached = cardsCache.getAll(userIds);
+    Map<Long, List<Card>> cards = new LinkedHashMap<>();
+    long now = System.currentTimeMillis();
+    cached.forEach((userId, userCards) -> {
+      if (cardVersions.get(userId) != versions.get(userId)) {
+        discard(userId, userCards);
+      }
+      userCards.read(now);
+      cards.put(userId, userCards.getCards());
+    });
+    return cards;
+  }
+
+  /**
+   * Adds the card to, or replaces it in, the cached cards of its user.
+   *
+   * @param card {@link Card} as stored in the data store
+   */
+  public void cardAdded(Card card) {
+    Card cached = detach(card);
+    patch(card.getUserId(), cards -> cards.withCard(cached));
+  }
+
+  /**
+   * Adds the cards to, or replaces them in, the cached cards of their users, patching each user
+   * once.
+   *
+   * @param cards the cards as stored in the data store
+   */
+  public void cardsAdded(Collection<Card> cards) {
+    Map<Long, List<Card>> cardsByUser = cards.stream().map(CardsCache::detach)
+        .collect(Collectors.groupingBy(Card::getUserId));
+    cardsByUser.forEach((userId, added) -> patch(userId, cached -> cached.withCards(added)));
+  }
+
+  /**
+   * Removes the card from the cached cards of its user.
+   *
+   * @param card {@link Card} as removed from the data store
+   */
+  public void cardRemoved(Card card) {
+    patch(card.getUserId(), cards -> cards.withoutCard(card.getCardNumber()));
+  }
+
+  /**
+   * Discards the cached cards of the user, so that they are loaded again on the next read.
+   *
+   * @param userId an unique user identifier
+   */
+  public void invalidate(Long userId) {
+    cardVersions.bump(userId);
+    if (offHeap != null) {
+      offHeap.invalidate(userId);
+    }
+    cardsCache.invalidate(userId);
+    cardVersions.bump(userId);
+  }
+
+  /**
+   * @param maximumUsers the maximum number of users to return
+   * @return the cards of the users currently cached on the heap, at most the given number of users.
+   * Past that number, the users read most recently are returned first.
+   */
+  Map<Long, UserCards> entries(int maximumUsers) {
+    Collection<Map.Entry<Long, UserCards>> cached = cardsCache.asMap().entrySet();
+    if (cached.size() > maximumUsers) {
+      cached = Ordering.<Long>natural().onResultOf(
+              (Map.Entry<Long, UserCards> entry) -> entry.getValue().getLastReadAt())
+          .greatestOf(cached, maximumUsers);
+    }
+    Map<Long, UserCards> entries = new LinkedHashMap<>();
+    for (Map.Entry<Long, UserCards> entry : cached) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    return entries;
+  }
+
+  /**
+   * Caches the cards of the user unless they are already cached.
+   *
+   * @param userId    an unique user identifier
+   * @param userCards the cards of the user, as restored from a snapshot
+   */
+  void preload(Long userId, UserCards userCards) {
+    if (cardsCache.asMap().putIfAbsent(userId, userCards) == null) {
+      toOffHeap(userId, userCards);
+    }
+  }
+
+  /**
+   * @return the approximate number of users whose cards are cached
+   */
+  public long size() {
+    return cardsCache.size();
+  }
+
+  /**
+   * @return a snapshot of the cache statistics. All zeros when the statistics are not recorded.
+   */
+  public CacheStats stats() {
+    return cardsCache.stats();
+  }
+
+  /**
+   * Patches the cards of the user on the heap and writes them through to the second tier. The
+   * second tier is invalidated first, so that a load that starts before the patch applies either
+   * is waited for by the patch or reads the data store. The version of the cards is bumped last,
+   * once the patched cards are visible. It is bumped first as well, so that a bulk load that read
+   * the cards before the change and stores them after the patch sees that they changed.
+   */
+  private void patch(Long userId, UnaryOperator<UserCards> change) {
+    cardVersions.bump(userId);
+    if (offHeap != null) {
+      offHeap.invalidate(userId);
+    }
+    cardsCache.asMap().computeIfPresent(userId, (id, cards) -> toOffHeap(id, change.apply(cards)));
+    cardVersions.bump(userId);
+  }
+
+  /**
+   * Discards the cards of the user read by a bulk load, unless they were patched since. The second
+   * tier is invalidated first, so that it is never left with cards the heap no longer has.
+   */
+  private void discard(Long userId, UserCards loaded) {
+    if (offHeap != null) {
+      offHeap.invalidate(userId);
+    }
+    cardsCache.asMap().remove(userId, loaded);
+  }
+
+  /**
+   * Records a hit in the journal of the current request when the cards of the user are already on
+   * the heap. Otherwise, the load records where they are read from.
+   *
+   * @return whether the cards of the user are on the heap
+   */
+  private boolean recordHit(Long userId) {
+    // Unlike a read of the cache, it neither counts in its statistics nor waits for a load.
+    if (cardsCache.asMap().containsKey(userId)) {
+      requestJournal.cache(CacheOutcome.HIT);
+      return true;
+    }
+    return false;
+  }
+
+  private static UserCards read(UserCards userCards) {
+    userCards.read(System.currentTimeMillis());
+    return userCards;
+  }
+
+  private UserCards fromOffHeap(Long userId) {
+    if (offHeap == null) {
+      return null;
+    }
+    try {
+      UserCards stored = offHeap.get(userId);
+      if (stored != null) {
+        requestJournal.cache(CacheOutcome.OFF_HEAP);
+      }
+      return stored;
+    } catch (IllegalArgumentException e) {
+      log.warn("Unable to read the stored cards of the user id {}", userId, e);
+      offHeap.invalidate(userId);
+      return null;
+    }
+  }
+
+  private UserCards toOffHeap(Long userId, UserCards cards) {
+    if (offHeap != null) {
+      offHeap.put(userId, cards);
+    }
+    return cards;
+  }
+
+  private void monitorOffHeap(MeterRegistry meterRegistry) {
+    Tags tags = Tags.of("cache", OFF_HEAP_CACHE_NAME);
+    Gauge.builder("cache.size", offHeap, OffHeapCardStore::size).tags(tags)
+        .description("The number of users whose cards are stored off the heap")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.gets", offHeap, OffHeapCardStore::hitCount).tags(tags)
+        .tag("result", "hit")
+        .description("The number of times the cards were read off the heap")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.gets", offHeap, OffHeapCardStore::missCount).tags(tags)
+        .tag("result", "miss")
+        .description("The number of times the cards were not found off the heap")
+        .register(meterRegistry);
+    FunctionCounter.builder("cache.evictions", offHeap, OffHeapCardStore::evictionCount)
+        .tags(tags)
+        .description("The number of users whose cards were overwritten off the heap")
+        .register(meterRegistry);
+    Gauge.builder("cards.cache.offheap.used", offHeap, OffHeapCardStore::usedBytes).tags(tags)
+        .baseUnit("bytes")
+        .description("The number of bytes of the off-heap buffer holding live cards")
+        .register(meterRegistry);
+    Gauge.builder("cards.cache.offheap.capacity", offHeap, OffHeapCardStore::capacity).tags(tags)
+        .baseUnit("bytes")
+        .description("The size of the off-heap buffer")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Builds the cache bounded by weight, which is the number of cards of a user, when a maximum
+   * weight is configured and by the number of users otherwise.
+   */
+  static LoadingCache<Long, UserCards> build(CardsCacheProperties properties,
+      CacheLoader<Long, UserCards> loader) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (properties.getExpireAfterAccess() != null) {
+      builder.expireAfterAccess(properties.getExpireAfterAccess().toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (properties.getExpireAfterWrite() != null) {
+      builder.expireAfterWrite(properties.getExpireAfterWrite().toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (properties.isRecordStats()) {
+      builder.recordStats();
+    }
+    if (properties.getMaximumWeight() != null) {
+      // Users without cards still occupy an entry, hence they weigh at least one.
+      Weigher<Long, UserCards> weigher = (userId, cards) -> Math.max(1, cards.size());
+      return builder.maximumWeight(properties.getMaximumWeight()).weigher(weigher).build(loader);
+    }
+    return builder.maximumSize(properties.getMaximumSize()).build(loader);
+  }
+
+  /**
+   * A copy of the card that is safe to share with the readers of the cache. It is not affected by
+   * later changes to the given card and never carries the CVV.
+   */
+  private static Card detach(Card card) {
+    return Card.builder().userId(card.getUserId()).cardHolderName(card.getCardHolderName())
+        .cardNumber(card.getCardNumber()).hashedCardNumber(card.getHashedCardNumber())
+        .expiryMonth(card.getExpiryMonth()).expiryYear(card.getExpiryYear())
+        .cardIssuer(card.getCardIssuer()).expired(card.isExpired()).build();
+  }
+}
@@ -0,0 +1,53 @@
+package in.amigoscorp.cards.cache;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The tuning knobs of the per-user cards cache. The cache is bounded either by the number of users
+ * ({@code maximumSize}) or, when {@code maximumWeight} is configured, by the total number of cards
+ * held across all the users.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.cache")
+public class CardsCacheProperties {
+
+  /**
+   * The maximum number of users whose cards are kept in the cache. Ignored when {@code
+   * maximumWeight} is configured.
+   */
+  private long maximumSize = 10_000;
+  /**
+   * The maximum number of cards, summed over all the cached users, kept in the cache.
+   */
+  private Long maximumWeight;
+  /**
+   * Evicts the cards of a user once they are not read or written for this long.
+   */
+  private Duration expireAfterAccess = Duration.ofMinutes(30);
+  /**
+   * Evicts the cards of a user once they are loaded or written this long ago.
+   */
+  private Duration expireAfterWrite;
+  /**
+   * Whether the hit, miss, eviction and load time statistics are recorded.
+   */
+  private boolean recordStats = true;
+  /**
+   * The maximum number of users whose cards are loaded by a single query on a bulk read. Must stay
+   * within the maximum number of parameters of a statement in the data store.
+   */
+  private int loadAllChunkSize = 1_000;
+  /**
+   * The size of the buffer, outside the heap, that holds the serialized cards of the users behind
+   * the cache on the heap. Below 2GB, zero disables it.
+   */
+  private DataSize offHeapCapacity = DataSize.ofMegabytes(64);
+  /**
+   * The maximum number of users whose version, served as the entity tag of their cards, is tracked
+   * on its own.
+   */
+  private int maximumTrackedVersions = 100_000;
+}
@@ -0,0 +1,210 @@
+package in.amigoscorp.cards.cache;
+
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Snapshots the cards cache to a file, periodically and on shutdown, and warms the cache up from
+ * it on startup. The warm-up runs before the application reports itself ready to accept traffic,
+ * so the first requests after a deploy are served from the cache rather than the data store. When
+ * there is no snapshot to restore, or it is corrupt or too old, the cards of the users holding an
+ * active card are loaded from the data store instead.
+ *
+ * <p>The snapshot is a header of the magic number, the format and the creation time, followed by
+ * the number of users and the serialized cards of each user, and ends with a CRC32 of all the
+ * preceding bytes. It is written to a temporary file first and then moved over the previous one.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cards.cache.snapshot", name = "enabled", matchIfMissing = true)
+public class CardsCacheSnapshot implements ApplicationRunner {
+
+  private static final int MAGIC = 0x43524453;
+  private static final byte FORMAT = 1;
+
+  private final Logger log = LoggerFactory.getLogger(CardsCacheSnapshot.class);
+  private final CardsCache cardsCache;
+  private final CardRepository cardRepository;
+  private final CardsCacheSnapshotProperties properties;
+  private final ShardRouter shardRouter;
+
+  public CardsCacheSnapshot(CardsCache cardsCache, CardRepository cardRepository,
+      CardsCacheSnapshotProperties properties, ShardRouter shardRouter) {
+    this.cardsCache = cardsCache;
+    this.cardRepository = cardRepository;
+    this.properties = properties;
+    this.shardRouter = shardRouter;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    long start = System.nanoTime();
+    int restored;
+    try {
+      restored = restore();
+    } catch (Exception e) {
+      log.warn("Unable to restore the cache snapshot {}, preloading the active users.",
+          properties.getPath(), e);
+      restored = -1;
+    }
+    if (restored < 0) {
+      restored = preload();
+    }
+    log.info("Warmed the cache up with the cards of {} users in {} ms.", restored,
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Scheduled(fixedDelayString = "${cards.cache.snapshot.interval:PT5M}",
+      initialDelayString = "${cards.cache.snapshot.interval:PT5M}")
+  public void snapshot() {
+    try {
+      Map<Long, UserCards> entries = cardsCache.entries(properties.getMaximumUsers());
+      write(properties.getPath(), entries, System.currentTimeMillis());
+      log.info("Snapshotted the cards of {} users to {}", entries.size(), properties.getPath());
+    } catch (Exception e) {
+      log.error("Unable to snapshot the cache to {}", properties.getPath(), e);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    snapshot();
+  }
+
+  /**
+   * @return the number of users restored, {@code -1} when there is no recent snapshot
+   */
+  private int restore() throws IOException {
+    if (!Files.isRegularFile(properties.getPath())) {
+      log.info("No cache snapshot at {}", properties.getPath());
+      return -1;
+    }
+    long notBefore = System.currentTimeMillis() - properties.getMaximumAge().toMillis();
+    Map<Long, UserCards> entries = read(properties.getPath(), notBefore);
+    if (entries == null) {
+      log.info("The cache snapshot at {} is too old to restore.", properties.getPath());
+      return -1;
+    }
+    entries.forEach(cardsCache::preload);
+    return entries.size();
+  }
+
+  private int preload() {
+    if (properties.getPreloadUsers() <= 0) {
+      return 0;
+    }
+    try {
+      // Every shard contributes its share of the users.
+      PageRequest page = PageRequest.of(0,
+          Math.max(1, properties.getPreloadUsers() / shardRouter.shardCount()));
+      List<Long> userIds = new ArrayList<>();
+      for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+        userIds.addAll(shardRouter.callOnShard(shard,
+            () -> cardRepository.findActiveUserIds(page)));
+      }
+      return cardsCache.getAll(userIds).size();
+    } catch (Exception e) {
+      log.error("Unable to preload the cards of the active users.", e);
+      return 0;
+    }
+  }
+
+  /**
+   * Writes the snapshot to a temporary file next to the given one and moves it over the given one.
+   */
+  static void write(Path path, Map<Long, UserCards> entries, long createdAt) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      CheckedOutputStream checked = new CheckedOutputStream(Files.newOutputStream(temporary),
+          new CRC32());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked))) {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT);
+        out.writeLong(createdAt);
+        out.writeInt(entries.size());
+        for (Map.Entry<Long, UserCards> entry : entries.entrySet()) {
+          byte[] bytes = CardListSerializer.serialize(entry.getValue());
+          out.writeLong(entry.getKey());
+          out.writeInt(bytes.length);
+          out.write(bytes);
+        }
+        out.flush();
+        out.writeLong(checked.getChecksum().getValue());
+      }
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Reads the snapshot through a memory mapping of the file.
+   *
+   * @param notBefore the time, in milliseconds since the epoch, before which the snapshot is too
+   *                  old to be read
+   * @return the cards of each user in the snapshot, {@code null} when the snapshot is too old
+   * @throws IllegalArgumentException when the snapshot is corrupt
+   */
+  static Map<Long, UserCards> read(Path path, long notBefore) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < Integer.BYTES + 1 + Long.BYTES + Integer.BYTES + Long.BYTES
+          || size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Unexpected size of the cache snapshot: " + size);
+      }
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+      long checksum = buffer.getLong((int) size - Long.BYTES);
+      buffer.limit((int) size - Long.BYTES);
+      CRC32 crc = new CRC32();
+      crc.update(buffer.duplicate());
+      if (crc.getValue() != checksum) {
+        throw new IllegalArgumentException("The checksum of the cache snapshot does not match.");
+      }
+      if (buffer.getInt() != MAGIC || buffer.get() != FORMAT) {
+        throw new IllegalArgumentException("Unknown format of the cache snapshot.");
+      }
+      if (buffer.getLong() < notBefore) {
+        return null;
+      }
+      int count = buffer.getInt();
+      Map<Long, UserCards> entries = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        long userId = buffer.getLong();
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        entries.put(userId, CardListSerializer.deserialize(bytes));
+      }
+      return entries;
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IllegalArgumentException("The cache snapshot is truncated.", e);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package in.amigoscorp.cards.cache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The snapshot of the cards cache that is restored on startup, so that a new instance does not
+ * start with an empty cache.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.cache.snapshot")
+public class CardsCacheSnapshotProperties {
+
+  /**
+   * Whether the cache is snapshotted periodically and on shutdown, and warmed up on startup.
+   */
+  private boolean enabled = true;
+  /**
+   * The file the snapshot is written to and restored from.
+   */
+  private Path path = Paths.get(System.getProperty("java.io.tmpdir"), "cards-cache.snapshot");
+  /**
+   * The time between two snapshots.
+   */
+  private Duration interval = Duration.ofMinutes(5);
+  /**
+   * The maximum number of users written to the snapshot, the ones read most recently.
+   */
+  private int maximumUsers = 10_000;
+  /**
+   * A snapshot older than this is not restored, as the cards may have changed since.
+   */
+  private Duration maximumAge = Duration.ofMinutes(30);
+  /**
+   * The number of users whose cards are loaded from the data store when there is no snapshot to
+   * restore.
+   */
+  private int preloadUsers = 1_000;
+}
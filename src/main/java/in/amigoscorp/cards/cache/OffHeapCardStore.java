@@ -0,0 +1,187 @@
+package in.amigoscorp.cards.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The second tier of the {@link CardsCache}, holding the serialized cards of each user in a single
+ * direct buffer outside the heap. The buffer is written as a circular log: every write is appended
+ * at the tail and, once the tail wraps around, the oldest entries are overwritten and evicted. Only
+ * the position of each entry is kept on the heap.
+ *
+ * <p>Reads copy the entry out of the buffer optimistically and only take the read lock when a
+ * write raced with the copy.
+ */
+final class OffHeapCardStore {
+
+  private final ByteBuffer buffer;
+  private final int capacity;
+  private final int maximumEntrySize;
+  private final Map<Long, Slot> index = new ConcurrentHashMap<>();
+  /**
+   * The slots in the order they are written, to evict them once they are overwritten.
+   */
+  private final ArrayDeque<Slot> log = new ArrayDeque<>();
+  private final StampedLock lock = new StampedLock();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  /**
+   * The number of bytes ever written, whose remainder by the capacity is the tail of the log.
+   */
+  private long tail;
+
+  /**
+   * @param capacity the size of the buffer in bytes
+   */
+  OffHeapCardStore(int capacity) {
+    this.buffer = ByteBuffer.allocateDirect(capacity);
+    this.capacity = capacity;
+    // A single user never takes more than a small share of the buffer.
+    this.maximumEntrySize = Math.max(1, capacity / 16);
+  }
+
+  /**
+   * @param userId an unique user identifier
+   * @return the cards of the user, {@code null} when they are not stored
+   */
+  UserCards get(Long userId) {
+    Slot slot = index.get(userId);
+    if (slot == null) {
+      misses.increment();
+      return null;
+    }
+    byte[] bytes = new byte[slot.length];
+    long stamp = lock.tryOptimisticRead();
+    boolean live = copy(slot, bytes);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        live = copy(slot, bytes);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    if (!live) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return CardListSerializer.deserialize(bytes);
+  }
+
+  /**
+   * Stores the cards of the user, replacing the ones stored before. Cards too large for the buffer
+   * are not stored.
+   *
+   * @param userId    an unique user identifier
+   * @param userCards the cards of the user
+   */
+  void put(Long userId, UserCards userCards) {
+    byte[] bytes = CardListSerializer.serialize(userCards);
+    if (bytes.length > maximumEntrySize) {
+      index.remove(userId);
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int offset = (int) (tail % capacity);
+      if (offset + bytes.length > capacity) {
+        // Entries never wrap around, the rest of the buffer is skipped instead.
+        tail += capacity - offset;
+        offset = 0;
+      }
+      Slot slot = new Slot(userId, tail, bytes.length);
+      tail += bytes.length;
+      evictOverwritten();
+      ByteBuffer target = buffer.duplicate();
+      target.position(offset);
+      target.put(bytes);
+      log.addLast(slot);
+      index.put(userId, slot);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * @param userId an unique user identifier
+   */
+  void invalidate(Long userId) {
+    index.remove(userId);
+  }
+
+  long size() {
+    return index.size();
+  }
+
+  long hitCount() {
+    return hits.sum();
+  }
+
+  long missCount() {
+    return misses.sum();
+  }
+
+  long evictionCount() {
+    return evictions.sum();
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the number of bytes taken by the entries that are not overwritten yet
+   */
+  long usedBytes() {
+    long stamp = lock.readLock();
+    try {
+      return log.isEmpty() ? 0 : tail - log.peekFirst().position;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Evicts the slots the tail has caught up with. Must hold the write lock.
+   */
+  private void evictOverwritten() {
+    while (!log.isEmpty() && tail - log.peekFirst().position > capacity) {
+      Slot overwritten = log.removeFirst();
+      if (index.remove(overwritten.userId, overwritten)) {
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * @return whether the slot was not overwritten when copied
+   */
+  private boolean copy(Slot slot, byte[] bytes) {
+    if (tail - slot.position > capacity) {
+      return false;
+    }
+    ByteBuffer source = buffer.duplicate();
+    source.position((int) (slot.position % capacity));
+    source.get(bytes);
+    return true;
+  }
+
+  private static final class Slot {
+
+    private final Long userId;
+    private final long position;
+    private final int length;
+
+    private Slot(Long userId, long position, int length) {
+      this.userId = userId;
+      this.position = position;
+      this.length = length;
+    }
+  }
+}
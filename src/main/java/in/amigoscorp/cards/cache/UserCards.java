@@ -0,0 +1,163 @@
+package in.amigoscorp.cards.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import in.amigoscorp.cards.entity.Card;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable, versioned view of the cards of a user as held by the {@link CardsCache}. Every
+ * change produces a new instance with the next version, so a reader always sees either the list
+ * before or after a change and never a partially applied one.
+ *
+ * <p>The JSON of the cards is encoded on the first request for it and kept along with them, so it
+ * is encoded once per version rather than once per read.
+ *
+ * <p>The time of the last read is kept along with the cards and carried over to the next versions,
+ * so that the snapshot of the cache keeps the users read most recently.
+ */
+public final class UserCards {
+
+  /**
+   * The precision of the time of the last read, so that the cards of a hot user are written to at
+   * most once per interval rather than on every read.
+   */
+  private static final long READ_PRECISION_MILLIS = 1_000;
+
+  private final long version;
+  private final ImmutableList<Card> cards;
+  private volatile byte[] json;
+  private volatile long lastReadAt;
+
+  private UserCards(long version, ImmutableList<Card> cards, long lastReadAt) {
+    this.version = version;
+    this.cards = cards;
+    this.lastReadAt = lastReadAt;
+  }
+
+  /**
+   * @param cards the cards of a user as loaded from the data store
+   * @return the initial version of the cards of the user
+   */
+  public static UserCards of(Collection<Card> cards) {
+    return new UserCards(0, ImmutableList.copyOf(cards), 0);
+  }
+
+  /**
+   * @param version the version of the cards as they were serialized
+   * @param cards   the cards of a user
+   * @return the cards of the user at the given version
+   */
+  static UserCards of(long version, Collection<Card> cards) {
+    return new UserCards(version, ImmutableList.copyOf(cards), 0);
+  }
+
+  /**
+   * @return the number of changes applied since the cards were loaded from the data store
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return an immutable list of the cards of the user
+   */
+  public List<Card> getCards() {
+    return cards;
+  }
+
+  public int size() {
+    return cards.size();
+  }
+
+  /**
+   * @return the time the cards were last read at, in milliseconds since the epoch, {@code 0} when
+   * they were never read
+   */
+  long getLastReadAt() {
+    return lastReadAt;
+  }
+
+  /**
+   * Records a read of the cards. Concurrent reads may overwrite each other, which is harmless.
+   *
+   * @param now the current time, in milliseconds since the epoch
+   */
+  void read(long now) {
+    if (now - lastReadAt >= READ_PRECISION_MILLIS) {
+      lastReadAt = now;
+    }
+  }
+
+  /**
+   * @param writer the writer of a list of {@link Card}, the same one on every call
+   * @return the JSON array of the cards. Shared by all the readers, hence must not be modified.
+   * @throws JsonProcessingException when the cards cannot be encoded
+   */
+  public byte[] toJson(ObjectWriter writer) throws JsonProcessingException {
+    byte[] encoded = json;
+    if (encoded == null) {
+      // Concurrent first reads may encode the same bytes more than once, which is harmless.
+      encoded = writer.writeValueAsBytes(cards);
+      json = encoded;
+    }
+    return encoded;
+  }
+
+  /**
+   * @param card the card that is added or updated
+   * @return the cards with the given card replacing the one with the same card number, if any, or
+   * appended otherwise
+   */
+  public UserCards withCard(Card card) {
+    ImmutableList.Builder<Card> builder = ImmutableList.builderWithExpectedSize(cards.size() + 1);
+    boolean replaced = false;
+    for (Card existing : cards) {
+      if (Objects.equals(existing.getCardNumber(), card.getCardNumber())) {
+        builder.add(card);
+        replaced = true;
+      } else {
+        builder.add(existing);
+      }
+    }
+    if (!replaced) {
+      builder.add(card);
+    }
+    return new UserCards(version + 1, builder.build(), lastReadAt);
+  }
+
+  /**
+   * @param added the cards that are added or updated
+   * @return the cards with each of the given cards replacing the one with the same card number, if
+   * any, or appended otherwise
+   */
+  public UserCards withCards(Collection<Card> added) {
+    Map<String, Card> cardsByNumber = new LinkedHashMap<>();
+    for (Card existing : cards) {
+      cardsByNumber.put(existing.getCardNumber(), existing);
+    }
+    for (Card card : added) {
+      cardsByNumber.put(card.getCardNumber(), card);
+    }
+    return new UserCards(version + 1, ImmutableList.copyOf(cardsByNumber.values()), lastReadAt);
+  }
+
+  /**
+   * @param cardNumber the hashed card number of the card that is removed
+   * @return the cards without the card with the given card number
+   */
+  public UserCards withoutCard(String cardNumber) {
+    ImmutableList.Builder<Card> builder = ImmutableList.builderWithExpectedSize(cards.size());
+    for (Card existing : cards) {
+      if (!Objects.equals(existing.getCardNumber(), cardNumber)) {
+        builder.add(existing);
+      }
+    }
+    return new UserCards(version + 1, builder.build(), lastReadAt);
+  }
+}
@@ -0,0 +1,129 @@
+package in.amigoscorp.cards.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes the actual card numbers in a single pass over their digits: it verifies the check digit
+ * with the Luhn algorithm, masks all but the last 4 digits and computes the keyed hash the card is
+ * identified by. The {@link Mac} and buffers are pooled and reused, so the only allocations are the
+ * two resulting strings, and the given card number buffer is zeroed once encoded.
+ *
+ * <p>The pool, unlike a thread local, is not defeated by a new virtual thread per request. It keeps
+ * up to {@link CardNumberCodecProperties#getMaxPooledEncoders()} encoders, the ones created past
+ * that by a burst of concurrent calls are dropped once used.
+ */
+@Component
+public class CardNumberCodec {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int MIN_LENGTH = 12;
+  private static final int MAX_LENGTH = 19;
+  private static final int VISIBLE_DIGITS = 4;
+  private static final char MASK = 'X';
+
+  private final SecretKeySpec key;
+  private final Queue<Encoder> encoders;
+
+  public CardNumberCodec(CardNumberCodecProperties properties) {
+    if (StringUtils.isEmpty(properties.getHmacKey())) {
+      throw new IllegalStateException("cards.codec.hmac-key is not configured.");
+    }
+    this.key = new SecretKeySpec(
+        properties.getHmacKey().getBytes(StandardCharsets.UTF_8), properties.getAlgorithm());
+    this.encoders = new ArrayBlockingQueue<>(properties.getMaxPooledEncoders());
+    // Fails fast on an unknown algorithm or an unusable key.
+    encoders.add(new Encoder(newMac(key)));
+  }
+
+  /**
+   * Encode the card number. The given buffer is zeroed afterwards, whether the card number is
+   * valid or not.
+   *
+   * @param cardNumber the digits of the actual card number
+   * @return the masked card number and its keyed hash, or {@link EncodedCardNumber#isValid()}
+   * {@code false} when the card number is not valid
+   */
+  public EncodedCardNumber encode(char[] cardNumber) {
+    Encoder encoder = encoders.poll();
+    if (encoder == null) {
+      encoder = new Encoder(newMac(key));
+    }
+    try {
+      int length = cardNumber.length;
+      if (length < MIN_LENGTH || length > MAX_LENGTH) {
+        return EncodedCardNumber.INVALID;
+      }
+      Mac mac = encoder.mac;
+      mac.reset();
+      char[] masked = encoder.masked;
+      int sum = 0;
+      for (int i = 0; i < length; i++) {
+        char character = cardNumber[i];
+        int digit = character - '0';
+        if (digit < 0 || digit > 9) {
+          return EncodedCardNumber.INVALID;
+        }
+        // Every second digit from the check digit, which is the last one, is doubled.
+        if (((length - i) & 1) == 0) {
+          digit *= 2;
+          if (digit > 9) {
+            digit -= 9;
+          }
+        }
+        sum += digit;
+        masked[i] = i < length - VISIBLE_DIGITS ? MASK : character;
+        mac.update((byte) character);
+      }
+      if (sum % 10 != 0) {
+        return EncodedCardNumber.INVALID;
+      }
+      byte[] digest = encoder.digest;
+      mac.doFinal(digest, 0);
+      char[] hex = encoder.hex;
+      for (int i = 0; i < digest.length; i++) {
+        hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+        hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+      }
+      return new EncodedCardNumber(true, new String(masked, 0, length), new String(hex));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to hash the card number.", e);
+    } finally {
+      Arrays.fill(cardNumber, '\0');
+      Arrays.fill(encoder.masked, '\0');
+      // Dropped when the pool is full.
+      encoders.offer(encoder);
+    }
+  }
+
+  private static Mac newMac(SecretKeySpec key) {
+    try {
+      Mac mac = Mac.getInstance(key.getAlgorithm());
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to initialise " + key.getAlgorithm(), e);
+    }
+  }
+
+  private static final class Encoder {
+
+    private final Mac mac;
+    private final byte[] digest;
+    private final char[] hex;
+    private final char[] masked = new char[MAX_LENGTH];
+
+    private Encoder(Mac mac) {
+      this.mac = mac;
+      this.digest = new byte[mac.getMacLength()];
+      this.hex = new char[2 * digest.length];
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package in.amigoscorp.cards.codec;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The key and algorithm the card numbers are hashed with into the card identifiers. Changing
+ * either changes the identifiers of all the cards, hence the stored cards have to be migrated.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.codec")
+public class CardNumberCodecProperties {
+
+  /**
+   * The secret key of the keyed hash. Must be provided per environment.
+   */
+  private String hmacKey;
+  /**
+   * The {@link javax.crypto.Mac} algorithm of the keyed hash.
+   */
+  private String algorithm = "HmacSHA256";
+  /**
+   * The maximum number of idle encoders kept for reuse.
+   */
+  private int maxPooledEncoders = 64;
+}
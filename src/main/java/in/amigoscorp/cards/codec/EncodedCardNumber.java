@@ -0,0 +1,40 @@
+package in.amigoscorp.cards.codec;
+
+/**
+ * The outcome of encoding a card number with the {@link CardNumberCodec}.
+ */
+public final class EncodedCardNumber {
+
+  static final EncodedCardNumber INVALID = new EncodedCardNumber(false, null, null);
+
+  private final boolean valid;
+  private final String maskedCardNumber;
+  private final String hash;
+
+  EncodedCardNumber(boolean valid, String maskedCardNumber, String hash) {
+    this.valid = valid;
+    this.maskedCardNumber = maskedCardNumber;
+    this.hash = hash;
+  }
+
+  /**
+   * @return whether the card number consists of 12 to 19 digits and its check digit is valid
+   */
+  public boolean isValid() {
+    return valid;
+  }
+
+  /**
+   * @return the card number with all but the last 4 digits masked, {@code null} when invalid
+   */
+  public String getMaskedCardNumber() {
+    return maskedCardNumber;
+  }
+
+  /**
+   * @return the lower case hexadecimal keyed hash of the card number, {@code null} when invalid
+   */
+  public String getHash() {
+    return hash;
+  }
+}
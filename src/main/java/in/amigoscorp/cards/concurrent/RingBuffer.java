@@ -0,0 +1,104 @@
+package in.amigoscorp.cards.concurrent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue of many producers and a single consumer. Every slot carries a
+ * sequence telling whether it is free for the producer at a position or filled for the consumer
+ * at that position, so producers only contend on claiming the tail and never wait for each other
+ * to finish writing. The elements are taken in the order their positions were claimed.
+ *
+ * <p>It carries the card change events to their sinks and the request events to the journal.
+ *
+ * @param <E> the type of the elements
+ */
+public final class RingBuffer<E> {
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  /**
+   * Only ever written by the consumer.
+   */
+  private volatile long head;
+
+  /**
+   * @param capacity the number of elements, rounded up to a power of two and to at least two, as
+   *                 a single slot could not tell a filled slot from the next free one
+   */
+  public RingBuffer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Unexpected capacity of the ring buffer: " + capacity);
+    }
+    this.capacity = Integer.highestOneBit(Math.max(2, (capacity - 1) << 1));
+    this.mask = this.capacity - 1;
+    this.elements = new AtomicReferenceArray<>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * @param element the element to append
+   * @return whether the element is appended, {@code false} when the buffer is full
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Takes the elements at the head, up to the first one whose producer is still writing it. Must
+   * only be called by the consumer.
+   *
+   * @param target  the list to add the elements to
+   * @param maximum the maximum number of elements to take
+   * @return the number of elements taken
+   */
+  public int drainTo(List<? super E> target, int maximum) {
+    long position = head;
+    int taken = 0;
+    while (taken < maximum) {
+      int index = (int) position & mask;
+      if (sequences.get(index) != position + 1) {
+        break;
+      }
+      target.add(elements.get(index));
+      elements.lazySet(index, null);
+      sequences.set(index, position + capacity);
+      position++;
+      taken++;
+    }
+    head = position;
+    return taken;
+  }
+
+  /**
+   * @return the number of elements claimed and not taken yet
+   */
+  public int size() {
+    return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+}
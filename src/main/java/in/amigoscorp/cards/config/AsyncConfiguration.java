@@ -0,0 +1,31 @@
+package in.amigoscorp.cards.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * The executors the card operations continue on once they leave the request threads. They are
+ * sized through the {@code spring.task.execution.*} properties, unless the operations run on
+ * virtual threads as configured by {@link VirtualThreadConfiguration}.
+ *
+ * <p>Defining this executor makes Spring Boot back off its default {@code applicationTaskExecutor},
+ * hence the {@code spring.task.execution.*} properties size this one instead. Its queue is bounded
+ * and, once full, the submitting thread runs the operation itself, which slows the callers down
+ * instead of queueing without bound or failing the operations.
+ */
+@Configuration
+public class AsyncConfiguration {
+
+  @Bean
+  @ConditionalOnProperty(prefix = "cards.virtual-threads", name = "enabled", havingValue = "false",
+      matchIfMissing = true)
+  public ThreadPoolTaskExecutor cardsTaskExecutor(TaskExecutorBuilder builder) {
+    ThreadPoolTaskExecutor executor = builder.threadNamePrefix("cards-").build();
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    return executor;
+  }
+}
@@ -0,0 +1,22 @@
+package in.amigoscorp.cards.config;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times the methods annotated with {@link Timed}. The endpoints and the repository queries are
+ * timed by Spring Boot as {@code http.server.requests} and
+ * {@code spring.data.repository.invocations}, their histograms are enabled through the
+ * {@code management.metrics.distribution.*} properties.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+  @Bean
+  public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+    return new TimedAspect(meterRegistry);
+  }
+}
@@ -0,0 +1,51 @@
+package in.amigoscorp.cards.config;
+
+import java.util.concurrent.ExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serves the requests and continues the card operations on virtual threads instead of the pools
+ * of platform threads, so that the number of blocked requests is no longer capped by the number of
+ * threads. Enabled with {@code cards.virtual-threads.enabled=true} on Java 21 or later.
+ *
+ * <p>A virtual thread blocked inside a {@code synchronized} block pins its carrier thread, hence
+ * the hot paths of the application only lock through {@link java.util.concurrent.locks}. Pinning
+ * left in the libraries, such as the JDBC driver, is reported with
+ * {@code -Djdk.tracePinnedThreads=short}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cards.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+  private final Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+  public VirtualThreadConfiguration() {
+    if (!VirtualThreads.isSupported()) {
+      throw new IllegalStateException("cards.virtual-threads.enabled requires Java 21 or later, "
+          + "running on " + System.getProperty("java.version"));
+    }
+    log.info("Serving the requests on virtual threads.");
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService cardsTaskExecutor() {
+    return VirtualThreads.newVirtualThreadPerTaskExecutor("cards-");
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService webRequestExecutor() {
+    return VirtualThreads.newVirtualThreadPerTaskExecutor("http-");
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+      @Qualifier("webRequestExecutor") ExecutorService webRequestExecutor) {
+    return protocolHandler -> protocolHandler.setExecutor(webRequestExecutor);
+  }
+}
@@ -1,61 +1,189 @@
 package in.amigoscorp.cards.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.journal.RequestJournal;
+import in.amigoscorp.cards.service.CardBatchResult;
+import in.amigoscorp.cards.service.CardBatchService;
+import in.amigoscorp.cards.service.CardPage;
+import in.amigoscorp.cards.service.CardRegistration;
+import in.amigoscorp.cards.service.CardRegistration.Status;
 import in.amigoscorp.cards.service.CardService;
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 public class CardController {
 
   private final Logger log = LoggerFactory.getLogger(CardController.class);
   private final CardService cardService;
+  private final CardBatchService cardBatchService;
+  private final ObjectMapper objectMapper;
+  private final RequestJournal requestJournal;
 
-  public CardController(CardService cardService) {
+  public CardController(CardService cardService, CardBatchService cardBatchService,
+      ObjectMapper objectMapper, RequestJournal requestJournal) {
     this.cardService = cardService;
+    this.cardBatchService = cardBatchService;
+    this.objectMapper = objectMapper;
+    this.requestJournal = requestJournal;
   }
 
   /**
-   * Get all the cards by user identifier
+   * Get all the cards by user identifier. The cards carry an entity tag, and a request whose
+   * {@code If-None-Match} matches the current one is answered with 304 Not Modified, without
+   * reading the cards. Otherwise, the JSON of the cards, encoded once per version of the cached
+   * cards, is copied to the response.
    *
-   * @param userId a unique user identifier
-   * @return the list of cards associated to the user
+   * @param userId  a unique user identifier
+   * @param request the request, whose {@code If-None-Match} header is checked
+   * @return the JSON array of the cards associated to the user, written as is to the response,
+   * {@code null} when not modified
    */
   @GetMapping(path = {"/cards/{userId}/", "/cards/{userId}"})
-  public ResponseEntity<List<Card>> getAllCardsByUserId(@PathVariable Long userId) {
-    log.info("Calling GET getAllCardsByUserId() for the user id {}", userId);
-    List<Card> cards = this.cardService.getAllCardsByUserId(userId);
-    if (CollectionUtils.isEmpty(cards)) {
-      log.warn("No cards found for the user id {}", userId);
+  public ResponseEntity<byte[]> getAllCardsByUserId(@PathVariable Long userId,
+      WebRequest request) {
+    requestJournal.user(userId);
+    // The tag is read before the cards, so it is never newer than the cards it is served with.
+    if (request.checkNotModified(this.cardService.getCardsETag(userId))) {
+      return null;
+    }
+    byte[] cards = this.cardService.getAllCardsJsonByUserId(userId);
+    if (cards == null) {
+      return ResponseEntity.noContent().build();
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cards);
+  }
+
+  /**
+   * Get a page of the cards by user identifier. The page carries the cursor of the next page, if
+   * any, which is passed back as is to fetch it.
+   *
+   * @param userId a unique user identifier
+   * @param limit  the maximum number of cards in the page
+   * @param cursor the cursor of the page, none for the first page
+   * @return the page of cards associated to the user
+   */
+  @GetMapping(path = {"/cards/{userId}/", "/cards/{userId}"}, params = "limit")
+  public ResponseEntity<CardPage> getCardsPageByUserId(@PathVariable Long userId,
+      @RequestParam int limit, @RequestParam(required = false) String cursor) {
+    requestJournal.user(userId);
+    CardPage page;
+    try {
+      page = this.cardService.getCardsPage(userId, cursor, limit);
+    } catch (IllegalArgumentException e) {
+      log.warn("Invalid cursor {} for the user id {}", cursor, userId);
+      return ResponseEntity.badRequest().build();
+    }
+    if (CollectionUtils.isEmpty(page.getCards())) {
       return ResponseEntity.noContent().build();
     }
-    return ResponseEntity.ok(cards);
+    return ResponseEntity.ok(page);
+  }
+
+  /**
+   * Get all the cards of each of the given users
+   *
+   * @param userIds the unique user identifiers, comma separated
+   * @return the cards associated to each user, keyed by the user identifier
+   */
+  @GetMapping(path = {"/cards", "/cards/"}, params = "userIds")
+  public ResponseEntity<Map<Long, List<Card>>> getAllCardsByUserIds(
+      @RequestParam List<Long> userIds) {
+    requestJournal.users(userIds.size());
+    return lookupCards(userIds);
+  }
+
+  /**
+   * Get all the cards of each of the given users. Serves the same lookup as {@link
+   * #getAllCardsByUserIds(List)} for sets of users too large for a query string.
+   *
+   * @param userIds a JSON array of the unique user identifiers
+   * @return the cards associated to each user, keyed by the user identifier
+   */
+  @PostMapping(path = {"/cards/lookup", "/cards/lookup/"},
+      consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<Long, List<Card>>> lookupCardsByUserIds(
+      @RequestBody List<Long> userIds) {
+    requestJournal.users(userIds.size());
+    return lookupCards(userIds);
   }
 
   /**
-   * Save the card information securely
+   * Save the card information securely. The card is verified with its issuer and stored in the
+   * background, the progress of which is available at the returned location.
    *
    * @param card {@link Card}
-   * @return None
+   * @return the registration of the card
    */
   @PostMapping(path = {"/card", "/card/"})
-  public ResponseEntity<Void> saveCard(@RequestBody Card card) {
-    log.info("Calling GET saveCard() for the user id {}", card.getUserId());
-    boolean isCardAdded = this.cardService.addCard(card);
-    if (isCardAdded) {
-      log.info("Card is successfully stored.");
-      return ResponseEntity.accepted().build();
-    } else {
-      log.info("Unable to store the card details.");
+  public ResponseEntity<CardRegistration> saveCard(@RequestBody Card card) {
+    requestJournal.user(card.getUserId());
+    CardRegistration registration = this.cardService.submitCard(card);
+    if (registration.getStatus() == Status.REJECTED) {
+      return ResponseEntity.badRequest().body(registration);
+    }
+    URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+        .path("/card/status/{registrationId}").buildAndExpand(registration.getId()).toUri();
+    return ResponseEntity.accepted().location(location).body(registration);
+  }
+
+  /**
+   * Get the progress of a card submitted to be saved
+   *
+   * @param registrationId the identifier of the registration returned when saving the card
+   * @return the registration of the card
+   */
+  @GetMapping(path = {"/card/status/{registrationId}", "/card/status/{registrationId}/"})
+  public ResponseEntity<CardRegistration> getCardStatus(@PathVariable String registrationId) {
+    CardRegistration registration = this.cardService.getRegistration(registrationId);
+    if (registration == null) {
+      log.warn("No registration found for the id {}", registrationId);
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(registration);
+  }
+
+  /**
+   * Save the cards information securely in bulk. The request body is a JSON array of cards which is
+   * read as a stream, so it is never held in memory as a whole.
+   *
+   * @param request the request whose body is a JSON array of {@link Card}
+   * @return the outcome of every card, in the order of the request
+   * @throws IOException when the request body cannot be read
+   */
+  @PostMapping(path = {"/cards/batch", "/cards/batch/"}, consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<CardBatchResult>> saveCards(HttpServletRequest request)
+      throws IOException {
+    try (MappingIterator<Card> cards = objectMapper.readerFor(Card.class)
+        .readValues(request.getInputStream())) {
+      return ResponseEntity.ok(this.cardBatchService.addCards(cards));
+    }
+  }
+
+  private ResponseEntity<Map<Long, List<Card>>> lookupCards(List<Long> userIds) {
+    try {
+      return ResponseEntity.ok(this.cardService.getAllCardsByUserIds(userIds));
+    } catch (IllegalArgumentException e) {
+      log.warn("Too many users requested: {}", userIds.size());
       return ResponseEntity.badRequest().build();
     }
   }
@@ -68,13 +196,11 @@ public class CardController {
    */
   @DeleteMapping(path = {"/card", "/card/"})
   public ResponseEntity<Void> deleteCard(@RequestBody Card card) {
-    log.info("Calling GET deleteCard() for the user id {}", card.getUserId());
+    requestJournal.user(card.getUserId());
     boolean isCardDeleted = this.cardService.deleteCard(card);
     if (isCardDeleted) {
-      log.info("Card is successfully deleted.");
       return ResponseEntity.accepted().build();
     } else {
-      log.info("Unable to delete the card details.");
       return ResponseEntity.badRequest().build();
     }
   }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,6 +14,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+@Table(indexes = {@Index(name = "idx_card_user_card", columnList = "userId, cardNumber"),
+    @Index(name = "idx_card_user_expired", columnList = "userId, expired"),
+    @Index(name = "idx_card_expiry", columnList = "expiryYear, expiryMonth")})
 @Data
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,6 @@
+package in.amigoscorp.cards.entity;
+
+public enum CardChangeType {
+  ADDED,
+  REMOVED
+}
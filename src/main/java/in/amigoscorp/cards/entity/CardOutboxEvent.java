@@ -0,0 +1,37 @@
+package in.amigoscorp.cards.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change to a card, written in the same transaction as the change itself and deleted once it is
+ * delivered to the sinks of the card change events. The identifiers are drawn from a sequence in
+ * blocks, so the inserts of a transaction are still sent in JDBC batches.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_card_outbox_occurred", columnList = "occurredAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardOutboxEvent {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_outbox_sequence")
+  @SequenceGenerator(name = "card_outbox_sequence", allocationSize = 50)
+  private Long id;
+  @Enumerated(EnumType.STRING)
+  private CardChangeType type;
+  private Long userId;
+  private String cardNumber;
+  private long occurredAt;
+}
@@ -0,0 +1,23 @@
+package in.amigoscorp.cards.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The progress of a background sweep over the cards. Everything before the watermark month is
+ * already swept, so a sweep can resume from it after a restart.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweepWatermark {
+
+  @Id
+  private String name;
+  private Integer watermarkYear;
+  private Integer watermarkMonth;
+}
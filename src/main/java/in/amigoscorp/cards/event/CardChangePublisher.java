@@ -0,0 +1,308 @@
+package in.amigoscorp.cards.event;
+
+import in.amigoscorp.cards.concurrent.RingBuffer;
+import in.amigoscorp.cards.entity.CardOutboxEvent;
+import in.amigoscorp.cards.repository.CardOutboxRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams the card changes to the {@link CardChangeSink}s. Every change writes an outbox event in
+ * its own transaction and, once committed, publishes it onto a bounded {@link RingBuffer}. A single
+ * drainer thread takes the events off the buffer in batches, delivers them to every sink and then
+ * deletes them from the outbox.
+ *
+ * <p>The changes of a user are published in the order they are committed, as the writer holds the
+ * lock of the user across both, and the drainer keeps that order. A full buffer pushes back on the
+ * writers for up to {@link CardEventsProperties#getPublishTimeout()} per transaction. The first
+ * event that still does not fit starts a backlog: it, the rest of its transaction and every later
+ * change are left to the outbox, which the drainer delivers in full once it has drained the buffer.
+ * Only then are the changes published onto the buffer again, so that none overtakes an earlier
+ * change of its user. The events left in the outbox by a restart, or by a failed deletion, are
+ * delivered from the outbox once they are older than {@link
+ * CardEventsProperties#getRedeliveryAge()}.
+ *
+ * <p>The outbox events are deleted once every sink took them, whether durable or not, so that the
+ * outbox only ever holds the events not delivered yet. Without a durable sink, the events
+ * delivered are lost on a restart.
+ *
+ * <p>The outbox events live on the shard of their user, next to the cards they record.
+ */
+@Component
+public class CardChangePublisher {
+
+  private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final Logger log = LoggerFactory.getLogger(CardChangePublisher.class);
+  private final RingBuffer<CardChanged> buffer;
+  private final CardOutboxRepository outboxRepository;
+  private final List<CardChangeSink> sinks;
+  private final ShardRouter shardRouter;
+  private final int batchSize;
+  private final long publishTimeoutNanos;
+  private final long retryBackoffNanos;
+  private final long redeliveryAgeMillis;
+  private final long startedAt = System.currentTimeMillis();
+  private final Counter published;
+  private final Counter overflows;
+  private final Counter delivered;
+  private final Counter redelivered;
+  private final Counter failures;
+  private final Timer publishWait;
+  private final Timer lag;
+  private final Thread drainer;
+  private volatile boolean running = true;
+  /**
+   * Whether the changes are left to the outbox, until the events it holds are delivered.
+   */
+  private volatile boolean backlog;
+
+  public CardChangePublisher(CardOutboxRepository outboxRepository,
+      ObjectProvider<CardChangeSink> sinks, ShardRouter shardRouter,
+      CardEventsProperties properties, MeterRegistry meterRegistry) {
+    this.buffer = new RingBuffer<>(properties.getBufferSize());
+    this.outboxRepository = outboxRepository;
+    this.sinks = sinks.orderedStream().collect(Collectors.toList());
+    this.shardRouter = shardRouter;
+    this.batchSize = properties.getBatchSize();
+    this.publishTimeoutNanos = properties.getPublishTimeout().toNanos();
+    this.retryBackoffNanos = properties.getRetryBackoff().toNanos();
+    this.redeliveryAgeMillis = properties.getRedeliveryAge().toMillis();
+    this.published = Counter.builder("cards.events.published")
+        .description("The number of card change events published onto the buffer")
+        .register(meterRegistry);
+    this.overflows = Counter.builder("cards.events.overflows")
+        .description("The number of card change events left to the outbox by a full buffer")
+        .register(meterRegistry);
+    this.delivered = Counter.builder("cards.events.delivered")
+        .description("The number of card change events delivered to the sinks")
+        .register(meterRegistry);
+    this.redelivered = Counter.builder("cards.events.redelivered")
+        .description("The number of card change events delivered from the outbox")
+        .register(meterRegistry);
+    this.failures = Counter.builder("cards.events.delivery.failures")
+        .description("The number of batches of card change events the sinks failed")
+        .register(meterRegistry);
+    this.publishWait = Timer.builder("cards.events.publish.wait")
+        .description("The time the writers waited for room in the full buffer")
+        .register(meterRegistry);
+    this.lag = Timer.builder("cards.events.lag")
+        .description("The time between a card change and its delivery to the sinks")
+        .register(meterRegistry);
+    Gauge.builder("cards.events.buffer.size", buffer, RingBuffer::size)
+        .description("The number of card change events waiting in the buffer")
+        .register(meterRegistry);
+    Gauge.builder("cards.events.buffer.capacity", buffer, RingBuffer::capacity)
+        .description("The number of card change events the buffer holds")
+        .register(meterRegistry);
+    this.drainer = new Thread(this::drain, "card-events-drainer");
+    this.drainer.setDaemon(true);
+  }
+
+  @PostConstruct
+  void start() {
+    if (sinks.stream().noneMatch(CardChangeSink::isDurable)) {
+      log.warn("No durable card change sink is configured, the events are lost on a restart.");
+    }
+    drainer.start();
+  }
+
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(drainer);
+    drainer.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  /**
+   * Publishes the events of committed changes, in the given order.
+   *
+   * @param events the outbox events written by the changes
+   */
+  public void publish(List<CardOutboxEvent> events) {
+    if (backlog) {
+      overflows.increment(events.size());
+      LockSupport.unpark(drainer);
+      return;
+    }
+    // A single deadline for the whole call, as the writer holds the locks of the users meanwhile.
+    long deadline = System.nanoTime() + publishTimeoutNanos;
+    for (int i = 0; i < events.size(); i++) {
+      if (!publish(CardChanged.of(events.get(i)), deadline)) {
+        // The later events must not overtake the ones of the same users left to the outbox.
+        backlog = true;
+        int left = events.size() - i;
+        overflows.increment(left);
+        log.warn("The card change events buffer is full, {} events from {} on and the later ones "
+            + "are left to the outbox.", left, events.get(i).getId());
+        break;
+      }
+    }
+    LockSupport.unpark(drainer);
+  }
+
+  /**
+   * @return whether the event is published onto the buffer before the deadline
+   */
+  private boolean publish(CardChanged event, long deadline) {
+    if (buffer.offer(event)) {
+      published.increment();
+      return true;
+    }
+    long start = System.nanoTime();
+    boolean offered;
+    while (!(offered = buffer.offer(event)) && System.nanoTime() - deadline < 0
+        && !Thread.currentThread().isInterrupted()) {
+      LockSupport.unpark(drainer);
+      LockSupport.parkNanos(this, WAIT_NANOS);
+    }
+    publishWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    if (offered) {
+      published.increment();
+    }
+    return offered;
+  }
+
+  private void drain() {
+    List<CardChanged> batch = new ArrayList<>(batchSize);
+    // The events left in the outbox by the previous run come first.
+    redeliver(startedAt);
+    long lastRedelivery = System.currentTimeMillis();
+    while (running) {
+      try {
+        if (buffer.drainTo(batch, batchSize) > 0) {
+          deliver(batch, null);
+          batch.clear();
+        } else if (backlog) {
+          catchUp();
+        } else if (System.currentTimeMillis() - lastRedelivery >= redeliveryAgeMillis) {
+          redeliver(System.currentTimeMillis() - redeliveryAgeMillis);
+          lastRedelivery = System.currentTimeMillis();
+        } else {
+          LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+      } catch (RuntimeException e) {
+        log.error("Unable to drain the card change events.", e);
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Delivers every event of the outbox, once the buffer is drained, and then publishes the changes
+   * onto the buffer again. A last pass delivers the events committed before the changes were
+   * published again, ahead of the ones that follow them on the buffer, which are then delivered
+   * twice.
+   */
+  private void catchUp() {
+    if (!redeliver(Long.MAX_VALUE)) {
+      LockSupport.parkNanos(this, retryBackoffNanos);
+      return;
+    }
+    backlog = false;
+    redeliver(Long.MAX_VALUE);
+  }
+
+  /**
+   * Delivers the events that occurred before the given time from the outbox of every shard, oldest
+   * first.
+   *
+   * @return whether all of them are delivered
+   */
+  private boolean redeliver(long before) {
+    boolean drained = true;
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      int outbox = shard;
+      try {
+        drained &= shardRouter.callOnShard(shard, () -> redeliver(outbox, before));
+      } catch (Exception e) {
+        log.error("Unable to deliver the card change events from the outbox of the shard {}.",
+            shard, e);
+        drained = false;
+      }
+    }
+    return drained;
+  }
+
+  private boolean redeliver(int shard, long before) {
+    List<CardOutboxEvent> events;
+    do {
+      events = outboxRepository.findByOccurredAtLessThanOrderById(before,
+          PageRequest.of(0, batchSize));
+      if (events.isEmpty()) {
+        return true;
+      }
+      if (!deliver(events.stream().map(CardChanged::of).collect(Collectors.toList()), shard)) {
+        return false;
+      }
+      redelivered.increment(events.size());
+    } while (events.size() == batchSize);
+    return true;
+  }
+
+  /**
+   * Delivers the batch to every sink, retrying until they all take it or the drainer stops, and
+   * deletes it from the outbox.
+   *
+   * @param shard the shard of the outbox the events are read from, {@code null} to delete them
+   *              from the shard of their user
+   * @return whether the batch is delivered and deleted from the outbox
+   */
+  private boolean deliver(List<CardChanged> batch, Integer shard) {
+    boolean taken = false;
+    while (!taken && running) {
+      try {
+        for (CardChangeSink sink : sinks) {
+          sink.deliver(batch);
+        }
+        taken = true;
+      } catch (Exception e) {
+        failures.increment();
+        log.error("Unable to deliver {} card change events, retrying.", batch.size(), e);
+        LockSupport.parkNanos(this, retryBackoffNanos);
+      }
+    }
+    if (!taken) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    for (CardChanged event : batch) {
+      lag.record(now - event.getOccurredAt(), TimeUnit.MILLISECONDS);
+    }
+    delivered.increment(batch.size());
+    try {
+      // An event outlives the move of its user to another shard in the outbox it was read from.
+      Map<Integer, List<CardChanged>> shards = shard != null
+          ? Collections.singletonMap(shard, batch)
+          : shardRouter.partition(batch, CardChanged::getUserId);
+      for (Map.Entry<Integer, List<CardChanged>> events : shards.entrySet()) {
+        List<Long> ids = events.getValue().stream().map(CardChanged::getId)
+            .collect(Collectors.toList());
+        shardRouter.onShard(events.getKey(), () -> outboxRepository.deleteAllByIdInBatch(ids));
+      }
+      return true;
+    } catch (Exception e) {
+      log.error("Unable to delete {} delivered card change events from the outbox.", batch.size(),
+          e);
+      return false;
+    }
+  }
+}
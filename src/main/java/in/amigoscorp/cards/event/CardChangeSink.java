@@ -0,0 +1,25 @@
+package in.amigoscorp.cards.event;
+
+import java.util.List;
+
+/**
+ * A destination of the card change events, such as a message broker. The events are delivered in
+ * batches, in the order the changes of every user were written, and at least once: a batch that
+ * fails is retried as a whole and the events not acknowledged before a restart are delivered
+ * again, so a sink must ignore the events whose user and identifier it already received.
+ */
+public interface CardChangeSink {
+
+  /**
+   * @param events the events of the batch, which are not to be kept past the call
+   * @throws Exception when the batch is not delivered and must be retried
+   */
+  void deliver(List<CardChanged> events) throws Exception;
+
+  /**
+   * @return whether the events delivered survive a restart
+   */
+  default boolean isDurable() {
+    return true;
+  }
+}
@@ -0,0 +1,31 @@
+package in.amigoscorp.cards.event;
+
+import in.amigoscorp.cards.entity.CardChangeType;
+import in.amigoscorp.cards.entity.CardOutboxEvent;
+import lombok.Value;
+
+/**
+ * A card of a user was added or removed. The identifier is the one of the outbox event, which
+ * increases with every change of a user, so the sinks can tell the changes they already received.
+ * The identifiers are drawn per shard, hence a change is identified by its user and identifier.
+ */
+@Value
+public class CardChanged {
+
+  long id;
+  CardChangeType type;
+  Long userId;
+  /**
+   * The keyed hash of the card number, which identifies the card.
+   */
+  String cardNumber;
+  /**
+   * The time, in milliseconds since the epoch, the change was written.
+   */
+  long occurredAt;
+
+  static CardChanged of(CardOutboxEvent event) {
+    return new CardChanged(event.getId(), event.getType(), event.getUserId(),
+        event.getCardNumber(), event.getOccurredAt());
+  }
+}
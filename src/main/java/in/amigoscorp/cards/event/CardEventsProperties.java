@@ -0,0 +1,51 @@
+package in.amigoscorp.cards.event;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The tuning knobs of the card change events.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.events")
+public class CardEventsProperties {
+
+  /**
+   * The number of events the ring buffer holds, rounded up to a power of two and to at least two.
+   */
+  private int bufferSize = 8_192;
+  /**
+   * The maximum number of events delivered to the sinks at once.
+   */
+  private int batchSize = 256;
+  /**
+   * How long the changes of a transaction wait in total for room in the full ring buffer. Beyond
+   * that, the events left and all the later ones are delivered from the outbox, until it is empty.
+   */
+  private Duration publishTimeout = Duration.ofSeconds(5);
+  /**
+   * The delay before a batch the sinks failed is delivered again.
+   */
+  private Duration retryBackoff = Duration.ofSeconds(1);
+  /**
+   * The age of the outbox events that are delivered again, as they are presumably not in the ring
+   * buffer.
+   */
+  private Duration redeliveryAge = Duration.ofMinutes(1);
+  /**
+   * The sink of the events: {@code file}, {@code memory} or {@code none}. The events are deleted
+   * from the outbox once delivered, hence only the {@code file} sink keeps them across a restart.
+   */
+  private String sink = "file";
+  /**
+   * The number of events kept by the in-memory sink.
+   */
+  private int memoryCapacity = 10_000;
+  /**
+   * The file the file sink appends the events to.
+   */
+  private Path filePath = Paths.get(System.getProperty("java.io.tmpdir"), "card-events.jsonl");
+}
@@ -0,0 +1,45 @@
+package in.amigoscorp.cards.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Appends the card change events to {@link CardEventsProperties#getFilePath()}, one JSON object
+ * per line.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cards.events", name = "sink", havingValue = "file")
+public class FileCardChangeSink implements CardChangeSink {
+
+  private final Path path;
+  private final ObjectWriter writer;
+
+  public FileCardChangeSink(CardEventsProperties properties, ObjectMapper objectMapper) {
+    this.path = properties.getFilePath();
+    this.writer = objectMapper.writerFor(CardChanged.class);
+  }
+
+  @Override
+  public void deliver(List<CardChanged> events) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      for (CardChanged event : events) {
+        out.write(writer.writeValueAsString(event));
+        out.newLine();
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package in.amigoscorp.cards.event;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the last {@link CardEventsProperties#getMemoryCapacity()} card change events in memory,
+ * for the tests and the local development. The events are lost on a restart.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cards.events", name = "sink", havingValue = "memory")
+public class InMemoryCardChangeSink implements CardChangeSink {
+
+  private final Deque<CardChanged> events = new ConcurrentLinkedDeque<>();
+  private final int capacity;
+
+  public InMemoryCardChangeSink(CardEventsProperties properties) {
+    this.capacity = properties.getMemoryCapacity();
+  }
+
+  @Override
+  public void deliver(List<CardChanged> batch) {
+    events.addAll(batch);
+    // Only the drainer delivers, so the size only grows between the checks.
+    for (int excess = events.size() - capacity; excess > 0; excess--) {
+      events.pollFirst();
+    }
+  }
+
+  @Override
+  public boolean isDurable() {
+    return false;
+  }
+
+  /**
+   * @return the events kept, from the oldest to the latest
+   */
+  public List<CardChanged> events() {
+    return new ArrayList<>(events);
+  }
+
+  public void clear() {
+    events.clear();
+  }
+}
@@ -0,0 +1,161 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable index of the BIN (IIN) ranges of the card issuers. The ranges are normalised to
+ * {@value #BIN_LENGTH} digit bounds and kept sorted in primitive arrays, so resolving the issuer of
+ * a card number is a binary search that allocates nothing.
+ *
+ * <p>The ranges are read from lines of {@code low,high,ISSUER}, where {@code low} and {@code high}
+ * are BIN prefixes of up to {@value #BIN_LENGTH} digits, both inclusive. Blank lines and lines
+ * starting with {@code #} are ignored and the ranges must not overlap.
+ */
+public final class BinRangeIndex {
+
+  static final int BIN_LENGTH = 8;
+  private static final CardIssuer[] ISSUERS = CardIssuer.values();
+
+  private final long[] lows;
+  private final long[] highs;
+  private final byte[] issuers;
+
+  private BinRangeIndex(long[] lows, long[] highs, byte[] issuers) {
+    this.lows = lows;
+    this.highs = highs;
+    this.issuers = issuers;
+  }
+
+  /**
+   * @param reader the BIN ranges, one per line
+   * @return the index of the ranges
+   * @throws IOException              when the ranges cannot be read
+   * @throws IllegalArgumentException when a range is malformed or overlaps another one
+   */
+  public static BinRangeIndex load(Reader reader) throws IOException {
+    List<long[]> ranges = new ArrayList<>();
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    int lineNumber = 0;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] columns = line.split(",");
+      if (columns.length != 3) {
+        throw new IllegalArgumentException("Malformed BIN range at line " + lineNumber);
+      }
+      long low = normalise(columns[0].trim(), '0', lineNumber);
+      long high = normalise(columns[1].trim(), '9', lineNumber);
+      CardIssuer issuer = CardIssuer.valueOf(columns[2].trim());
+      if (low > high) {
+        throw new IllegalArgumentException("Empty BIN range at line " + lineNumber);
+      }
+      ranges.add(new long[]{low, high, issuer.ordinal()});
+    }
+    ranges.sort((left, right) -> Long.compare(left[0], right[0]));
+
+    long[] lows = new long[ranges.size()];
+    long[] highs = new long[ranges.size()];
+    byte[] issuers = new byte[ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      long[] range = ranges.get(i);
+      if (i > 0 && range[0] <= highs[i - 1]) {
+        throw new IllegalArgumentException("Overlapping BIN ranges starting at " + lows[i - 1]
+            + " and " + range[0]);
+      }
+      lows[i] = range[0];
+      highs[i] = range[1];
+      issuers[i] = (byte) range[2];
+    }
+    return new BinRangeIndex(lows, highs, issuers);
+  }
+
+  /**
+   * @param cardNumber the actual card number
+   * @return the issuer of the card number, {@code null} when it is not within any range or does
+   * not start with {@value #BIN_LENGTH} digits
+   */
+  public CardIssuer lookup(CharSequence cardNumber) {
+    if (cardNumber == null || cardNumber.length() < BIN_LENGTH) {
+      return null;
+    }
+    long bin = 0;
+    for (int i = 0; i < BIN_LENGTH; i++) {
+      int digit = cardNumber.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return null;
+      }
+      bin = bin * 10 + digit;
+    }
+    return lookup(bin);
+  }
+
+  /**
+   * @param cardNumber the digits of the actual card number
+   * @return the issuer of the card number, {@code null} when it is not within any range or does
+   * not start with {@value #BIN_LENGTH} digits
+   */
+  public CardIssuer lookup(char[] cardNumber) {
+    if (cardNumber == null || cardNumber.length < BIN_LENGTH) {
+      return null;
+    }
+    long bin = 0;
+    for (int i = 0; i < BIN_LENGTH; i++) {
+      int digit = cardNumber[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return null;
+      }
+      bin = bin * 10 + digit;
+    }
+    return lookup(bin);
+  }
+
+  /**
+   * @param bin the first {@value #BIN_LENGTH} digits of a card number
+   * @return the issuer of the BIN, {@code null} when it is not within any range
+   */
+  public CardIssuer lookup(long bin) {
+    int low = 0;
+    int high = lows.length - 1;
+    // Finds the last range starting at or before the BIN.
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (lows[middle] <= bin) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (high < 0 || bin > highs[high]) {
+      return null;
+    }
+    return ISSUERS[issuers[high]];
+  }
+
+  public int size() {
+    return lows.length;
+  }
+
+  private static long normalise(String prefix, char padding, int lineNumber) {
+    if (prefix.isEmpty() || prefix.length() > BIN_LENGTH) {
+      throw new IllegalArgumentException("Malformed BIN prefix at line " + lineNumber);
+    }
+    StringBuilder bin = new StringBuilder(BIN_LENGTH).append(prefix);
+    while (bin.length() < BIN_LENGTH) {
+      bin.append(padding);
+    }
+    try {
+      return Long.parseLong(bin.toString());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed BIN prefix at line " + lineNumber, e);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package in.amigoscorp.cards.issuer;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the asynchronous calls in flight to an issuer. The calls beyond the bound wait in a
+ * bounded queue, without holding any thread, and are started as the calls in flight complete.
+ *
+ * <p>A call holds its permit until its result completes. When the result is completed before the
+ * call, such as on a timeout, the call is cancelled and its permit released, so that an issuer
+ * that never answers cannot hold the permits forever. A waiting call whose result is already
+ * completed is not started.
+ */
+final class Bulkhead {
+
+  private final Semaphore permits;
+  private final int maxConcurrentCalls;
+  private final int maxWaitingCalls;
+  private final Queue<Runnable> waitingCalls = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waitingCount = new AtomicInteger();
+
+  Bulkhead(int maxConcurrentCalls, int maxWaitingCalls) {
+    this.permits = new Semaphore(maxConcurrentCalls);
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.maxWaitingCalls = maxWaitingCalls;
+  }
+
+  /**
+   * Starts the call right away when the bound permits and once a call in flight completes
+   * otherwise.
+   *
+   * @param call the call to start
+   * @return a future of the result of the call, failed with {@link BulkheadFullException} when
+   * too many calls are already waiting
+   */
+  <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start = () -> {
+      if (result.isDone()) {
+        // The caller gave up on the call while it was waiting.
+        release();
+        return;
+      }
+      CompletableFuture<T> future;
+      try {
+        future = call.get();
+      } catch (RuntimeException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+      }
+      CompletableFuture<T> inFlight = future;
+      result.whenComplete((value, error) -> {
+        release();
+        inFlight.cancel(true);
+      });
+      inFlight.whenComplete((value, error) -> {
+        if (error != null) {
+          result.completeExceptionally(error);
+        } else {
+          result.complete(value);
+        }
+      });
+    };
+    if (permits.tryAcquire()) {
+      start.run();
+    } else if (waitingCount.incrementAndGet() > maxWaitingCalls) {
+      waitingCount.decrementAndGet();
+      result.completeExceptionally(new BulkheadFullException("Too many calls waiting."));
+    } else {
+      waitingCalls.add(start);
+      // A call in flight may have completed before this one was queued.
+      startWaitingCalls();
+    }
+    return result;
+  }
+
+  int getCallsInFlight() {
+    return maxConcurrentCalls - permits.availablePermits();
+  }
+
+  int getWaitingCalls() {
+    return waitingCount.get();
+  }
+
+  private void release() {
+    permits.release();
+    startWaitingCalls();
+  }
+
+  private void startWaitingCalls() {
+    while (!waitingCalls.isEmpty() && permits.tryAcquire()) {
+      Runnable next = waitingCalls.poll();
+      if (next == null) {
+        permits.release();
+        return;
+      }
+      waitingCount.decrementAndGet();
+      next.run();
+    }
+  }
+}
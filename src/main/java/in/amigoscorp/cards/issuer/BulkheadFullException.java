@@ -0,0 +1,12 @@
+package in.amigoscorp.cards.issuer;
+
+/**
+ * Thrown when a bulkhead rejects a call because too many calls are already waiting. The call never
+ * reached the issuer, hence it tells nothing about the health of the issuer.
+ */
+class BulkheadFullException extends IssuerUnavailableException {
+
+  BulkheadFullException(String message) {
+    super(message);
+  }
+}
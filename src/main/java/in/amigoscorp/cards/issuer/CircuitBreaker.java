@@ -0,0 +1,64 @@
+package in.amigoscorp.cards.issuer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops the calls to an issuer after a number of consecutive failures. Once open, it lets a single
+ * trial call through after the open duration, which closes it again on success and keeps it open
+ * for another open duration on failure.
+ */
+final class CircuitBreaker {
+
+  private final int failureThreshold;
+  private final long openNanos;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicBoolean trialInFlight = new AtomicBoolean();
+  private volatile boolean open;
+  private volatile long openedAt;
+
+  CircuitBreaker(int failureThreshold, Duration openDuration) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+  }
+
+  /**
+   * @return whether a call is permitted. Every permitted call must be followed by either {@link
+   * #onSuccess()}, {@link #onFailure()} or {@link #onRejected()}.
+   */
+  boolean tryAcquire() {
+    if (!open) {
+      return true;
+    }
+    if (System.nanoTime() - openedAt < openNanos) {
+      return false;
+    }
+    return trialInFlight.compareAndSet(false, true);
+  }
+
+  void onSuccess() {
+    consecutiveFailures.set(0);
+    open = false;
+    trialInFlight.set(false);
+  }
+
+  void onFailure() {
+    if (open || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      openedAt = System.nanoTime();
+      open = true;
+      trialInFlight.set(false);
+    }
+  }
+
+  /**
+   * Releases a permitted call that never reached the issuer, leaving the state unchanged.
+   */
+  void onRejected() {
+    trialInFlight.set(false);
+  }
+
+  boolean isOpen() {
+    return open;
+  }
+}
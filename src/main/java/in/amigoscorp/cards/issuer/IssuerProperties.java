@@ -0,0 +1,48 @@
+package in.amigoscorp.cards.issuer;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * The limits applied to the calls to every card issuer.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.issuer")
+public class IssuerProperties {
+
+  /**
+   * Whether the local stand-ins of the card issuers are registered.
+   */
+  private boolean local = true;
+  /**
+   * The time after which a call to an issuer is failed, including the time it waited to start.
+   */
+  private Duration timeout = Duration.ofSeconds(2);
+  /**
+   * The maximum number of calls in flight per issuer.
+   */
+  private int maxConcurrentCalls = 64;
+  /**
+   * The maximum number of calls per issuer waiting for one of the calls in flight to complete.
+   */
+  private int maxWaitingCalls = 1_000;
+  /**
+   * The number of consecutive failed calls after which the issuer is not called anymore.
+   */
+  private int failureThreshold = 5;
+  /**
+   * The time for which the issuer is not called after too many failures, before a trial call.
+   */
+  private Duration openDuration = Duration.ofSeconds(30);
+  /**
+   * The BIN ranges the issuer of a card is resolved with.
+   */
+  private Resource binRanges = new ClassPathResource("bin-ranges.csv");
+  /**
+   * The delay between the checks of the BIN ranges file for changes.
+   */
+  private Duration binRangesCheckInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,85 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the issuer of a card from the leading digits of its card number, with the {@link
+ * BinRangeIndex} loaded from {@code cards.issuer.bin-ranges}. When the ranges are a file, it is
+ * checked for changes periodically and the index is rebuilt and swapped in as a whole, so the
+ * lookups in flight are never paused nor see a partially loaded index.
+ */
+@Component
+public class IssuerResolver {
+
+  private final Logger log = LoggerFactory.getLogger(IssuerResolver.class);
+  private final Resource binRanges;
+  private volatile BinRangeIndex index;
+  private volatile long lastModified;
+
+  public IssuerResolver(IssuerProperties properties) throws IOException {
+    this.binRanges = properties.getBinRanges();
+    this.lastModified = lastModified();
+    this.index = load();
+  }
+
+  /**
+   * Resolve the issuer of the card number from its leading digits. The check digit is verified by
+   * the {@link in.amigoscorp.cards.codec.CardNumberCodec}.
+   *
+   * @param cardNumber the digits of the actual card number
+   * @return the issuer of the card, {@code null} when the card number is not within the range of
+   * any issuer
+   */
+  public CardIssuer resolve(char[] cardNumber) {
+    return index.lookup(cardNumber);
+  }
+
+  /**
+   * Rebuild the index from the BIN ranges. The current index is kept when the ranges are invalid.
+   *
+   * @return whether the index is rebuilt
+   */
+  public boolean reload() {
+    try {
+      long modified = lastModified();
+      index = load();
+      lastModified = modified;
+      log.info("Loaded {} BIN ranges from {}", index.size(), binRanges);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      log.error("Unable to reload the BIN ranges from {}", binRanges, e);
+      return false;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${cards.issuer.bin-ranges-check-interval:PT1M}")
+  public void reloadIfModified() {
+    try {
+      if (binRanges.isFile() && lastModified() != lastModified) {
+        reload();
+      }
+    } catch (IOException e) {
+      log.error("Unable to check the BIN ranges at {}", binRanges, e);
+    }
+  }
+
+  private BinRangeIndex load() throws IOException {
+    try (Reader reader = new InputStreamReader(binRanges.getInputStream(),
+        StandardCharsets.UTF_8)) {
+      return BinRangeIndex.load(reader);
+    }
+  }
+
+  private long lastModified() throws IOException {
+    return binRanges.isFile() ? binRanges.lastModified() : 0;
+  }
+}
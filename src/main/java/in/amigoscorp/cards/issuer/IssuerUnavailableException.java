@@ -0,0 +1,11 @@
+package in.amigoscorp.cards.issuer;
+
+/**
+ * Thrown when a card issuer cannot be called or does not answer in time.
+ */
+public class IssuerUnavailableException extends RuntimeException {
+
+  public IssuerUnavailableException(String message) {
+    super(message);
+  }
+}
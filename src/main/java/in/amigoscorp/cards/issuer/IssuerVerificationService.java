@@ -0,0 +1,141 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service verifies the card details with the card issuers without blocking the caller. Each
+ * issuer is isolated from the others by its own bulkhead and circuit breaker, so a slow or failing
+ * issuer neither exhausts the threads nor delays the cards of the other issuers.
+ *
+ * <p>Every verification is timed as {@code cards.issuer.verification}, tagged with the issuer and
+ * its outcome: {@code valid}, {@code invalid}, {@code failed} or {@code rejected} when the circuit
+ * breaker is open or the bulkhead is full. The rejected calls never reach the issuer, hence they do
+ * not count as failures of the issuer.
+ *
+ * <p>A call that times out is cancelled and gives its place in the bulkhead up, so that an issuer
+ * that never answers does not end up holding every place. The calls timing out still count as
+ * failures of the issuer, which opens the circuit breaker of an issuer that keeps hanging.
+ */
+@Service
+public class IssuerVerificationService {
+
+  private final Logger log = LoggerFactory.getLogger(IssuerVerificationService.class);
+  private final Map<CardIssuer, Lane> lanes = new EnumMap<>(CardIssuer.class);
+  private final long timeoutNanos;
+  private final ScheduledThreadPoolExecutor timer;
+  private final MeterRegistry meterRegistry;
+
+  public IssuerVerificationService(List<IssuerVerifier> verifiers, IssuerProperties properties,
+      MeterRegistry meterRegistry) {
+    for (IssuerVerifier verifier : verifiers) {
+      Lane lane = new Lane(verifier, new Bulkhead(properties.getMaxConcurrentCalls(),
+          properties.getMaxWaitingCalls()), new CircuitBreaker(properties.getFailureThreshold(),
+          properties.getOpenDuration()));
+      if (lanes.put(verifier.getIssuer(), lane) != null) {
+        throw new IllegalStateException("More than one verifier for " + verifier.getIssuer());
+      }
+    }
+    this.timeoutNanos = properties.getTimeout().toNanos();
+    this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "issuer-timeout");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Verify the card details with the issuer of the card.
+   *
+   * @param card {@link Card} whose card number is already secured
+   * @return a future of whether the card details are valid or not, failed with {@link
+   * IssuerUnavailableException} when the issuer cannot be called or does not answer in time
+   */
+  public CompletableFuture<Boolean> verify(Card card) {
+    Lane lane = card.getCardIssuer() == null ? null : lanes.get(card.getCardIssuer());
+    if (lane == null) {
+      log.error("No verifier for the card issuer {}", card.getCardIssuer());
+      return CompletableFuture.completedFuture(false);
+    }
+    long start = System.nanoTime();
+    if (!lane.circuitBreaker.tryAcquire()) {
+      record(lane, "rejected", start);
+      CompletableFuture<Boolean> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(
+          new IssuerUnavailableException("The issuer " + lane.verifier.getIssuer() + " is down."));
+      return rejected;
+    }
+    return withTimeout(lane.bulkhead.submit(() -> lane.verifier.verify(card)))
+        .whenComplete((valid, error) -> {
+          if (error == null) {
+            lane.circuitBreaker.onSuccess();
+            record(lane, valid ? "valid" : "invalid", start);
+          } else if (error instanceof BulkheadFullException) {
+            lane.circuitBreaker.onRejected();
+            record(lane, "rejected", start);
+          } else {
+            log.warn("Unable to verify the card with the issuer {}", lane.verifier.getIssuer());
+            lane.circuitBreaker.onFailure();
+            record(lane, "failed", start);
+          }
+        });
+  }
+
+  /**
+   * Fails the result of a call once the timeout passes, from the submission of the call on. The
+   * bulkhead then cancels the call and releases its permit.
+   */
+  private CompletableFuture<Boolean> withTimeout(CompletableFuture<Boolean> result) {
+    if (result.isDone()) {
+      return result;
+    }
+    ScheduledFuture<?> timeout = timer.schedule(() -> result.completeExceptionally(
+        new IssuerUnavailableException("The issuer did not answer in time.")), timeoutNanos,
+        TimeUnit.NANOSECONDS);
+    result.whenComplete((valid, error) -> timeout.cancel(false));
+    return result;
+  }
+
+  private void record(Lane lane, String outcome, long start) {
+    Timer.builder("cards.issuer.verification")
+        .description("The time taken to verify the card details with the card issuer")
+        .tag("issuer", lane.verifier.getIssuer().name())
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    timer.shutdownNow();
+  }
+
+  private static final class Lane {
+
+    private final IssuerVerifier verifier;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private Lane(IssuerVerifier verifier, Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+      this.verifier = verifier;
+      this.bulkhead = bulkhead;
+      this.circuitBreaker = circuitBreaker;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The service provider interface of a card issuer verifying the card details. Every {@link
+ * CardIssuer} is served by at most one verifier bean. The calls are guarded by the {@link
+ * IssuerVerificationService}, which bounds the calls in flight, times them out and stops calling an
+ * issuer that keeps failing.
+ */
+public interface IssuerVerifier {
+
+  /**
+   * @return the card issuer served by this verifier
+   */
+  CardIssuer getIssuer();
+
+  /**
+   * Verify the card details with the card issuer. Implementations must not block the calling
+   * thread; a blocking client has to run on its own executor.
+   *
+   * @param card {@link Card} whose card number is already secured
+   * @return a future of whether the card details are valid or not. {@code true} represents the
+   * card details are valid. {@code false} represents the card details are not valid.
+   */
+  CompletableFuture<Boolean> verify(Card card);
+}
@@ -0,0 +1,26 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.CardIssuer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the local stand-ins of the card issuers, which accept the MasterCard cards and decline
+ * the VISA cards. Disable them with {@code cards.issuer.local=false} once the real verifiers are
+ * registered.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cards.issuer", name = "local", matchIfMissing = true)
+public class LocalIssuerConfiguration {
+
+  @Bean
+  public IssuerVerifier masterCardVerifier() {
+    return new LocalIssuerVerifier(CardIssuer.MASTERCARD, true);
+  }
+
+  @Bean
+  public IssuerVerifier visaVerifier() {
+    return new LocalIssuerVerifier(CardIssuer.VISA, false);
+  }
+}
@@ -0,0 +1,30 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A stand-in for a card issuer that answers locally, without any remote call, with a fixed verdict
+ * for all its cards.
+ */
+public class LocalIssuerVerifier implements IssuerVerifier {
+
+  private final CardIssuer issuer;
+  private final boolean valid;
+
+  public LocalIssuerVerifier(CardIssuer issuer, boolean valid) {
+    this.issuer = issuer;
+    this.valid = valid;
+  }
+
+  @Override
+  public CardIssuer getIssuer() {
+    return issuer;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> verify(Card card) {
+    return CompletableFuture.completedFuture(valid);
+  }
+}
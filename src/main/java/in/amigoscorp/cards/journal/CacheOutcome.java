@@ -0,0 +1,25 @@
+package in.amigoscorp.cards.journal;
+
+/**
+ * How the cards cache served a request, from the cheapest to the costliest. A request reading
+ * several users is recorded with the costliest outcome of all of them.
+ */
+public enum CacheOutcome {
+  /**
+   * The request did not read the cache.
+   */
+  NONE,
+  HIT,
+  /**
+   * Served from the second tier of the cache, outside the heap.
+   */
+  OFF_HEAP,
+  /**
+   * Loaded from the data store.
+   */
+  MISS,
+  /**
+   * Read from the data store directly, as the cache failed to load the cards.
+   */
+  BYPASSED
+}
@@ -0,0 +1,30 @@
+package in.amigoscorp.cards.journal;
+
+import lombok.Value;
+
+/**
+ * A request served by the cards endpoints, as recorded in the {@link RequestJournal}.
+ */
+@Value
+public class RequestEvent {
+
+  /**
+   * The time the request started at, in milliseconds since the epoch.
+   */
+  long startedAt;
+  /**
+   * The name of the handler method of the endpoint.
+   */
+  String endpoint;
+  /**
+   * The user the request is about, {@code null} when it is about several users or none.
+   */
+  Long userId;
+  /**
+   * The number of users the request is about.
+   */
+  int users;
+  CacheOutcome cache;
+  int status;
+  long durationMicros;
+}
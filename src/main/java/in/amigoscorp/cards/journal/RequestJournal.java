@@ -0,0 +1,347 @@
+package in.amigoscorp.cards.journal;
+
+import in.amigoscorp.cards.concurrent.RingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Records every request served by the cards endpoints as a fixed size event: the endpoint, the
+ * user, how the cache served it, its status and its duration. The request threads only fill in
+ * the event of their request and append it to a bounded {@link RingBuffer}, without formatting,
+ * locking nor touching a file; when it is full, the event is dropped rather than waited for. A single drainer thread takes the events off the
+ * buffer, keeps the most recent ones in memory for the {@link RequestJournalEndpoint} and writes a
+ * sample of them to a rolling file, one JSON object per line.
+ *
+ * <p>The event of a request is begun and ended by the {@link RequestJournalInterceptor}, which
+ * keeps it in an attribute of the request; the controller and the services add to it on the
+ * thread serving the request, through the {@link RequestContextHolder}. Unlike a thread local, it
+ * is not left behind on every thread, virtual or not, that ever served a request. The calls made
+ * outside of a request are ignored.
+ */
+@Component
+public class RequestJournal {
+
+  private static final int BATCH_SIZE = 256;
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final String REQUEST_ATTRIBUTE = RequestJournal.class.getName() + ".REQUEST";
+
+  private final Logger log = LoggerFactory.getLogger(RequestJournal.class);
+  private final boolean enabled;
+  private final RingBuffer<RequestEvent> ring;
+  private final ArrayDeque<RequestEvent> recent;
+  private final int recentEvents;
+  private final double sampleRate;
+  private final Path path;
+  private final long maxFileSize;
+  private final int maxHistory;
+  private final Counter recorded;
+  private final Counter dropped;
+  private final Counter written;
+  private final Thread drainer;
+  private final StringBuilder line = new StringBuilder(256);
+  private BufferedWriter out;
+  private long fileSize;
+  /**
+   * Whether the last write failed, so that a failing file is only reported once.
+   */
+  private boolean failing;
+  private volatile boolean running = true;
+
+  public RequestJournal(RequestJournalProperties properties, MeterRegistry meterRegistry) {
+    this.enabled = properties.isEnabled();
+    this.ring = new RingBuffer<>(enabled ? properties.getBufferSize() : 1);
+    this.recentEvents = Math.max(1, properties.getRecentEvents());
+    this.recent = new ArrayDeque<>(recentEvents);
+    this.sampleRate = properties.getSampleRate();
+    this.path = properties.getPath();
+    this.maxFileSize = properties.getMaxFileSize().toBytes();
+    this.maxHistory = properties.getMaxHistory();
+    this.recorded = Counter.builder("cards.journal.recorded")
+        .description("The number of requests recorded in the journal")
+        .register(meterRegistry);
+    this.dropped = Counter.builder("cards.journal.dropped")
+        .description("The number of requests dropped from the journal by a full buffer")
+        .register(meterRegistry);
+    this.written = Counter.builder("cards.journal.written")
+        .description("The number of requests written to the journal file")
+        .register(meterRegistry);
+    Gauge.builder("cards.journal.buffer.size", ring, RingBuffer::size)
+        .description("The number of requests waiting to be drained")
+        .register(meterRegistry);
+    this.drainer = new Thread(this::drain, "request-journal-drainer");
+    this.drainer.setDaemon(true);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled) {
+      drainer.start();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    if (enabled) {
+      drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+  }
+
+  /**
+   * Begins the event of the request, unless it is already begun by a previous dispatch of the
+   * request.
+   *
+   * @param request  the request being served
+   * @param endpoint the name of the handler method of the endpoint
+   */
+  public void begin(HttpServletRequest request, String endpoint) {
+    if (enabled && request.getAttribute(REQUEST_ATTRIBUTE) == null) {
+      request.setAttribute(REQUEST_ATTRIBUTE, new Request(endpoint));
+    }
+  }
+
+  /**
+   * @param userId the user the current request is about
+   */
+  public void user(Long userId) {
+    Request request = current();
+    if (request != null) {
+      request.userId = userId;
+      request.users = 1;
+    }
+  }
+
+  /**
+   * @param count the number of users the current request is about
+   */
+  public void users(int count) {
+    Request request = current();
+    if (request != null) {
+      request.userId = null;
+      request.users = count;
+    }
+  }
+
+  /**
+   * Records how the cache served the current request, unless it already served it at a higher
+   * cost.
+   *
+   * @param outcome the outcome of a cache read
+   */
+  public void cache(CacheOutcome outcome) {
+    Request request = current();
+    if (request != null && outcome.compareTo(request.cache) > 0) {
+      request.cache = outcome;
+    }
+  }
+
+  /**
+   * Ends the event of the request and appends it to the journal.
+   *
+   * @param servletRequest the request served
+   * @param status         the status of the response
+   */
+  public void end(HttpServletRequest servletRequest, int status) {
+    Request request = (Request) servletRequest.getAttribute(REQUEST_ATTRIBUTE);
+    if (request == null) {
+      return;
+    }
+    servletRequest.removeAttribute(REQUEST_ATTRIBUTE);
+    long durationMicros = (System.nanoTime() - request.startNanos) / 1_000;
+    if (ring.offer(new RequestEvent(request.startedAt, request.endpoint, request.userId,
+        request.users, request.cache, status, durationMicros))) {
+      recorded.increment();
+    } else {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * @param limit the maximum number of events
+   * @return the most recent events drained from the buffer, the latest first
+   */
+  public List<RequestEvent> recent(int limit) {
+    List<RequestEvent> events = new ArrayList<>(Math.min(Math.max(limit, 0), recentEvents));
+    synchronized (recent) {
+      Iterator<RequestEvent> latest = recent.descendingIterator();
+      while (latest.hasNext() && events.size() < limit) {
+        events.add(latest.next());
+      }
+    }
+    return events;
+  }
+
+  private Request current() {
+    if (!enabled) {
+      return null;
+    }
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    return attributes != null ? (Request) attributes.getAttribute(REQUEST_ATTRIBUTE,
+        RequestAttributes.SCOPE_REQUEST) : null;
+  }
+
+  private void drain() {
+    List<RequestEvent> events = new ArrayList<>(BATCH_SIZE);
+    try {
+      while (running || ring.size() > 0) {
+        events.clear();
+        if (ring.drainTo(events, BATCH_SIZE) == 0) {
+          flush();
+          LockSupport.parkNanos(IDLE_NANOS);
+          continue;
+        }
+        synchronized (recent) {
+          for (RequestEvent event : events) {
+            if (recent.size() == recentEvents) {
+              recent.removeFirst();
+            }
+            recent.addLast(event);
+          }
+        }
+        write(events);
+      }
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Writes the sampled events, and every failed one, to the file.
+   */
+  private void write(List<RequestEvent> events) {
+    for (RequestEvent event : events) {
+      if (event.getStatus() < 400 && sampleRate < 1
+          && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+        continue;
+      }
+      try {
+        if (out == null || fileSize >= maxFileSize) {
+          roll();
+        }
+        format(event);
+        out.append(line).append('\n');
+        fileSize += line.length() + 1;
+        written.increment();
+        failing = false;
+      } catch (IOException e) {
+        failed(e);
+        return;
+      }
+    }
+  }
+
+  private void format(RequestEvent event) {
+    line.setLength(0);
+    line.append("{\"startedAt\":").append(event.getStartedAt())
+        .append(",\"endpoint\":\"").append(event.getEndpoint())
+        .append("\",\"userId\":").append(event.getUserId())
+        .append(",\"users\":").append(event.getUsers())
+        .append(",\"cache\":\"").append(event.getCache())
+        .append("\",\"status\":").append(event.getStatus())
+        .append(",\"durationMicros\":").append(event.getDurationMicros())
+        .append('}');
+  }
+
+  /**
+   * Opens the file, moving it to {@code <path>.1} first once it is full, and the files before it
+   * one number up, dropping the oldest.
+   */
+  private void roll() throws IOException {
+    close();
+    Path directory = path.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    if (Files.exists(path) && Files.size(path) >= maxFileSize) {
+      Files.deleteIfExists(rolled(maxHistory));
+      for (int i = maxHistory - 1; i >= 1; i--) {
+        if (Files.exists(rolled(i))) {
+          Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      if (maxHistory > 0) {
+        Files.move(path, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        Files.delete(path);
+      }
+    }
+    out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+    fileSize = Files.size(path);
+  }
+
+  private Path rolled(int index) {
+    return path.resolveSibling(path.getFileName() + "." + index);
+  }
+
+  private void flush() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.flush();
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  private void failed(IOException e) {
+    if (!failing) {
+      log.error("Unable to write the request journal to {}", path, e);
+      failing = true;
+    }
+    close();
+  }
+
+  private void close() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      log.warn("Unable to close the request journal {}", path, e);
+    }
+    out = null;
+  }
+
+  /**
+   * The event of a request, kept in an attribute of the request until it ends.
+   */
+  private static final class Request {
+
+    private final String endpoint;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private Long userId;
+    private int users;
+    private CacheOutcome cache = CacheOutcome.NONE;
+
+    private Request(String endpoint) {
+      this.endpoint = endpoint;
+    }
+  }
+}
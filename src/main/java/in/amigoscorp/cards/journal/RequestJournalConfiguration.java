@@ -0,0 +1,24 @@
+package in.amigoscorp.cards.journal;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Records the requests of the cards endpoints in the {@link RequestJournal}.
+ */
+@Configuration
+public class RequestJournalConfiguration implements WebMvcConfigurer {
+
+  private final RequestJournal requestJournal;
+
+  public RequestJournalConfiguration(RequestJournal requestJournal) {
+    this.requestJournal = requestJournal;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new RequestJournalInterceptor(requestJournal))
+        .addPathPatterns("/card", "/card/**", "/cards", "/cards/**");
+  }
+}
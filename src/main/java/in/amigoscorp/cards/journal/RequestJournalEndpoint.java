@@ -0,0 +1,29 @@
+package in.amigoscorp.cards.journal;
+
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the most recent requests of the {@link RequestJournal} at {@code /actuator/journal},
+ * the latest first. {@code ?limit=n} caps the number of requests, 100 by default.
+ */
+@Component
+@Endpoint(id = "journal")
+public class RequestJournalEndpoint {
+
+  static final int DEFAULT_LIMIT = 100;
+
+  private final RequestJournal requestJournal;
+
+  public RequestJournalEndpoint(RequestJournal requestJournal) {
+    this.requestJournal = requestJournal;
+  }
+
+  @ReadOperation
+  public List<RequestEvent> events(@Nullable Integer limit) {
+    return requestJournal.recent(limit != null ? limit : DEFAULT_LIMIT);
+  }
+}
@@ -0,0 +1,36 @@
+package in.amigoscorp.cards.journal;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Begins the event of every request handled by a controller method and ends it once the response
+ * is complete. A request failing with an exception is recorded with status 500, as the error
+ * page sets its status only later.
+ */
+class RequestJournalInterceptor implements HandlerInterceptor {
+
+  private final RequestJournal requestJournal;
+
+  RequestJournalInterceptor(RequestJournal requestJournal) {
+    this.requestJournal = requestJournal;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    if (handler instanceof HandlerMethod) {
+      requestJournal.begin(request, ((HandlerMethod) handler).getMethod().getName());
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    requestJournal.end(request, ex != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+        : response.getStatus());
+  }
+}
@@ -0,0 +1,45 @@
+package in.amigoscorp.cards.journal;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The sizing of the {@link RequestJournal} and of the files it is written to.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.journal")
+public class RequestJournalProperties {
+
+  /**
+   * Whether the requests are recorded.
+   */
+  private boolean enabled = true;
+  /**
+   * The number of events the buffer holds until they are drained, rounded up to a power of two.
+   * The events recorded while it is full are dropped.
+   */
+  private int bufferSize = 16_384;
+  /**
+   * The number of the most recent events kept in memory for the journal endpoint.
+   */
+  private int recentEvents = 1_000;
+  /**
+   * The share of the successful requests written to the file. The failed ones are always written.
+   */
+  private double sampleRate = 1.0;
+  /**
+   * The file the events are written to, one JSON object per line.
+   */
+  private Path path = Paths.get(System.getProperty("java.io.tmpdir"), "cards-journal.jsonl");
+  /**
+   * The size past which the file is rolled over.
+   */
+  private DataSize maxFileSize = DataSize.ofMegabytes(64);
+  /**
+   * The number of rolled over files kept next to the current one.
+   */
+  private int maxHistory = 5;
+}
@@ -0,0 +1,20 @@
+package in.amigoscorp.cards.repository;
+
+import in.amigoscorp.cards.entity.Card;
+import java.util.Collection;
+
+/**
+ * Stores the cards known to be new without looking them up first, unlike {@code save}, which
+ * reads every card with an assigned card number before merging it.
+ */
+public interface CardInserter {
+
+  /**
+   * Inserts the cards on the current shard. The inserts are flushed right away, so a card that is
+   * already stored fails this call rather than the commit.
+   *
+   * @param cards the cards whose card number is already secured
+   * @throws org.springframework.dao.DataIntegrityViolationException when a card is already stored
+   */
+  void insertAll(Collection<Card> cards);
+}
@@ -0,0 +1,20 @@
+package in.amigoscorp.cards.repository;
+
+import in.amigoscorp.cards.entity.Card;
+import java.util.Collection;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+class CardInserterImpl implements CardInserter {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  @Transactional
+  public void insertAll(Collection<Card> cards) {
+    cards.forEach(entityManager::persist);
+    entityManager.flush();
+  }
+}
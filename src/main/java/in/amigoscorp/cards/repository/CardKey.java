@@ -0,0 +1,11 @@
+package in.amigoscorp.cards.repository;
+
+/**
+ * A projection of the identifying columns of a card.
+ */
+public interface CardKey {
+
+  String getCardNumber();
+
+  Long getUserId();
+}
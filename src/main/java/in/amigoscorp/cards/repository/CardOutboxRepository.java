@@ -0,0 +1,21 @@
+package in.amigoscorp.cards.repository;
+
+import in.amigoscorp.cards.entity.CardOutboxEvent;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This repository is responsible for storing the card change events that are not delivered yet.
+ */
+@Repository
+public interface CardOutboxRepository extends JpaRepository<CardOutboxEvent, Long> {
+
+  /**
+   * @param occurredAt the time, in milliseconds since the epoch, before which the events occurred
+   * @param pageable   the number of events to return
+   * @return the events that occurred before the given time, in the order they were written
+   */
+  List<CardOutboxEvent> findByOccurredAtLessThanOrderById(long occurredAt, Pageable pageable);
+}
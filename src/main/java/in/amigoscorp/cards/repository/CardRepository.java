@@ -1,15 +1,28 @@
 package in.amigoscorp.cards.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.shard.ShardKey;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * This repository is responsible for handling all the data store operations for the card model.
+ * The queries of the users run on their shards, the others on the shard the caller is on.
  */
 @Repository
-public interface CardRepository extends PagingAndSortingRepository<Card, Long> {
+public interface CardRepository extends PagingAndSortingRepository<Card, Long>, CardInserter {
 
   /**
    * Fetches all the cards information related to a particular user using user identifier.
@@ -17,7 +30,25 @@ public interface CardRepository extends PagingAndSortingRepository<Card, Long> {
    * @param userId an uniquer user identifier
    * @return a list of cards information
    */
-  List<Card> findAllByUserId(Long userId);
+  List<Card> findAllByUserId(@ShardKey Long userId);
+
+  /**
+   * Fetches all the cards information related to the given users in a single query. The number of
+   * users is bound by the maximum number of parameters of a statement in the data store.
+   *
+   * @param userIds the unique user identifiers
+   * @return a list of cards information of all the users
+   */
+  List<Card> findAllByUserIdIn(@ShardKey Collection<Long> userIds);
+
+  /**
+   * Fetches the identifiers of the users that hold at least one card that is not expired.
+   *
+   * @param pageable the maximum number of users to fetch
+   * @return a list of unique user identifiers
+   */
+  @Query("select distinct c.userId from Card c where c.expired = false")
+  List<Long> findActiveUserIds(Pageable pageable);
 
   /**
    * Fetches all the cards information related to a particular user using user identifier and the
@@ -28,5 +59,100 @@ public interface CardRepository extends PagingAndSortingRepository<Card, Long> {
    *                  expired. {@code false} represents the card is not expired.
    * @return a list of cards information
    */
-  List<Card> findAllByUserIdAndExpired(Long userId, boolean isExpired);
+  List<Card> findAllByUserIdAndExpired(@ShardKey Long userId, boolean isExpired);
+
+  /**
+   * Fetches the first page of the cards of a particular user, ordered by the card number.
+   *
+   * @param userId   an uniquer user identifier
+   * @param pageable the maximum number of cards to fetch
+   * @return a list of the displayed cards information
+   */
+  List<CardView> findByUserIdOrderByCardNumberAsc(@ShardKey Long userId, Pageable pageable);
+
+  /**
+   * Fetches the page of the cards of a particular user that follows the given card number, ordered
+   * by the card number. Seeking past the last card of the previous page keeps the cost of a page
+   * independent of its position.
+   *
+   * @param userId     an uniquer user identifier
+   * @param cardNumber the card number of the last card of the previous page
+   * @param pageable   the maximum number of cards to fetch
+   * @return a list of the displayed cards information
+   */
+  List<CardView> findByUserIdAndCardNumberGreaterThanOrderByCardNumberAsc(@ShardKey Long userId,
+      String cardNumber, Pageable pageable);
+
+  /**
+   * Fetches the cards that are not flagged as expired and whose expiry month falls within the given
+   * range, using the index on the expiry year and month. The bounds are compared as they are
+   * stored, so the same query serves both the two and the four digit expiry years.
+   *
+   * @param fromYear  the expiry year the range starts from
+   * @param fromMonth the expiry month the range starts from, inclusive
+   * @param toYear    the expiry year the range ends at
+   * @param toMonth   the expiry month the range ends at, exclusive
+   * @param pageable  the maximum number of cards to fetch
+   * @return the keys of the cards
+   */
+  @Query("select c.cardNumber as cardNumber, c.userId as userId from Card c"
+      + " where (c.expiryYear > :fromYear"
+      + " or (c.expiryYear = :fromYear and c.expiryMonth >= :fromMonth))"
+      + " and (c.expiryYear < :toYear or (c.expiryYear = :toYear and c.expiryMonth < :toMonth))"
+      + " and c.expired = false")
+  List<CardKey> findExpiryCandidates(@Param("fromYear") int fromYear,
+      @Param("fromMonth") int fromMonth, @Param("toYear") int toYear,
+      @Param("toMonth") int toMonth, Pageable pageable);
+
+  /**
+   * Fetches the identifiers of the users holding cards on the current shard, in their order.
+   *
+   * @param after    the last user identifier of the previous page
+   * @param pageable the maximum number of users to fetch
+   * @return a list of unique user identifiers
+   */
+  @Query("select distinct c.userId from Card c where c.userId > :after order by c.userId")
+  List<Long> findUserIdsAfter(@Param("after") long after, Pageable pageable);
+
+  /**
+   * Streams the card numbers of all the cards on the current shard, fetching them in chunks. Must
+   * be called within a transaction and the stream closed once consumed.
+   *
+   * @return the hashed card numbers of the cards
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query("select c.cardNumber from Card c")
+  Stream<String> streamAllCardNumbers();
+
+  /**
+   * Fetches the cards of the given users on the current shard, whichever shard the users belong
+   * to.
+   *
+   * @param userIds the unique user identifiers
+   * @return a list of cards information of all the users
+   */
+  @Query("select c from Card c where c.userId in :userIds")
+  List<Card> findAllOnShardByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+  /**
+   * Removes the cards of the given users from the current shard in a single statement.
+   *
+   * @param userIds the unique user identifiers
+   * @return the number of cards removed
+   */
+  @Modifying(clearAutomatically = true)
+  @Transactional
+  @Query("delete from Card c where c.userId in :userIds")
+  int deleteAllOnShardByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+  /**
+   * Flags the cards as expired in a single statement.
+   *
+   * @param cardNumbers the hashed card numbers of the cards
+   * @return the number of cards flagged
+   */
+  @Modifying(clearAutomatically = true)
+  @Transactional
+  @Query("update Card c set c.expired = true where c.cardNumber in :cardNumbers")
+  int markExpired(@Param("cardNumbers") Collection<String> cardNumbers);
 }
@@ -0,0 +1,26 @@
+package in.amigoscorp.cards.repository;
+
+import in.amigoscorp.cards.entity.CardIssuer;
+
+/**
+ * A read-only projection of the card columns that are displayed to the user. Only these columns
+ * are selected and no managed {@link in.amigoscorp.cards.entity.Card} entity is created.
+ */
+public interface CardView {
+
+  Long getUserId();
+
+  String getCardHolderName();
+
+  String getCardNumber();
+
+  String getHashedCardNumber();
+
+  Integer getExpiryMonth();
+
+  Integer getExpiryYear();
+
+  CardIssuer getCardIssuer();
+
+  boolean isExpired();
+}
@@ -0,0 +1,13 @@
+package in.amigoscorp.cards.repository;
+
+import in.amigoscorp.cards.entity.SweepWatermark;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This repository is responsible for storing the progress of the background sweeps.
+ */
+@Repository
+public interface SweepWatermarkRepository extends CrudRepository<SweepWatermark, String> {
+
+}
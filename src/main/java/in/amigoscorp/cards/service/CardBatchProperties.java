@@ -0,0 +1,22 @@
+package in.amigoscorp.cards.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The tuning knobs of the bulk card ingestion.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.batch")
+public class CardBatchProperties {
+
+  /**
+   * The number of cards persisted per transaction. Keep it aligned with {@code
+   * spring.jpa.properties.hibernate.jdbc.batch_size}.
+   */
+  private int batchSize = 500;
+  /**
+   * The number of threads masking, hashing and verifying the cards of a batch.
+   */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,40 @@
+package in.amigoscorp.cards.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of a single card of a bulk ingestion request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardBatchResult {
+
+  /**
+   * The position of the card in the request, starting from zero.
+   */
+  private int index;
+  private Long userId;
+  /**
+   * The masked card number, if the card number could be read.
+   */
+  private String hashedCardNumber;
+  private Status status;
+
+  public enum Status {
+    /**
+     * The card is stored.
+     */
+    ADDED,
+    /**
+     * The card details are invalid and the card is not stored.
+     */
+    INVALID,
+    /**
+     * The card could not be read or stored.
+     */
+    FAILED
+  }
+}
@@ -0,0 +1,173 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.issuer.IssuerVerificationService;
+import in.amigoscorp.cards.service.CardBatchResult.Status;
+import in.amigoscorp.cards.shard.ShardRouter;
+import io.micrometer.core.annotation.Timed;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service is responsible for ingesting the cards in bulk. The cards are consumed in batches
+ * of {@link CardBatchProperties#getBatchSize()}, each of which is secured in parallel, verified
+ * with the issuers concurrently and persisted together, in a transaction per shard, which patches
+ * them into the cache once per user.
+ */
+@Service
+public class CardBatchService {
+
+  private final Logger log = LoggerFactory.getLogger(CardBatchService.class);
+  private final CardService cardService;
+  private final IssuerVerificationService issuerVerificationService;
+  private final CardWriter cardWriter;
+  private final ShardRouter shardRouter;
+  private final int batchSize;
+  private final ForkJoinPool pool;
+
+  public CardBatchService(CardService cardService,
+      IssuerVerificationService issuerVerificationService, CardWriter cardWriter,
+      ShardRouter shardRouter, CardBatchProperties properties) {
+    this.cardService = cardService;
+    this.issuerVerificationService = issuerVerificationService;
+    this.cardWriter = cardWriter;
+    this.shardRouter = shardRouter;
+    this.batchSize = properties.getBatchSize();
+    this.pool = new ForkJoinPool(properties.getParallelism());
+  }
+
+  /**
+   * Add the cards securely, batch by batch, as they are read from the given iterator. A card that
+   * cannot be read stops the ingestion, the cards read before it are still processed.
+   *
+   * @param cards the cards to add, typically streamed from the request body
+   * @return the outcome of every card read, in the order of the request
+   */
+  @Timed(value = CardService.SERVICE_TIMER, histogram = true)
+  public List<CardBatchResult> addCards(Iterator<Card> cards) {
+    List<CardBatchResult> results = new ArrayList<>();
+    List<Card> batch = new ArrayList<>(batchSize);
+    try {
+      while (cards.hasNext()) {
+        batch.add(cards.next());
+        if (batch.size() == batchSize) {
+          results.addAll(addBatch(batch, results.size()));
+          batch.clear();
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error("Unable to read the card at the index {}.", results.size() + batch.size(), e);
+      results.addAll(addBatch(batch, results.size()));
+      results.add(new CardBatchResult(results.size(), null, null, Status.FAILED));
+      return results;
+    }
+    results.addAll(addBatch(batch, results.size()));
+    return results;
+  }
+
+  private List<CardBatchResult> addBatch(List<Card> batch, int offset) {
+    if (batch.isEmpty()) {
+      return new ArrayList<>();
+    }
+    CardBatchResult[] results = new CardBatchResult[batch.size()];
+    pool.submit(() -> IntStream.range(0, batch.size()).parallel()
+        .forEach(i -> results[i] = secure(batch.get(i), offset + i))).join();
+    CompletableFuture<?>[] verifications = new CompletableFuture<?>[results.length];
+    for (int i = 0; i < results.length; i++) {
+      verifications[i] = verify(batch.get(i), results[i]);
+    }
+    CompletableFuture.allOf(verifications).join();
+
+    List<Integer> valid = new ArrayList<>(batch.size());
+    for (int i = 0; i < results.length; i++) {
+      if (results[i].getStatus() == Status.ADDED) {
+        valid.add(i);
+      }
+    }
+    int stored = 0;
+    Map<Integer, List<Integer>> shards = shardRouter.partition(valid,
+        i -> batch.get(i).getUserId());
+    for (List<Integer> shard : shards.values()) {
+      stored += store(shard, batch, results);
+    }
+    log.info("Stored {} out of {} cards of the batch.", stored, batch.size());
+    return Arrays.asList(results);
+  }
+
+  /**
+   * @return the result of the card, {@link Status#INVALID} until the card is verified
+   */
+  private CardBatchResult secure(Card card, int index) {
+    CardBatchResult result = new CardBatchResult(index, card.getUserId(), null, Status.INVALID);
+    try {
+      if (cardService.secureCard(card)) {
+        result.setHashedCardNumber(card.getHashedCardNumber());
+      } else {
+        log.error("The card number provided at the index {} is invalid.", index);
+      }
+    } catch (Exception e) {
+      log.error("The card details provided at the index {} are invalid.", index);
+    }
+    return result;
+  }
+
+  private CompletableFuture<?> verify(Card card, CardBatchResult result) {
+    if (result.getHashedCardNumber() == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return issuerVerificationService.verify(card).handle((areCardDetailsValid, error) -> {
+      if (error != null) {
+        log.error("Unable to verify the card at the index {}.", result.getIndex());
+        result.setStatus(Status.FAILED);
+      } else if (areCardDetailsValid) {
+        result.setStatus(Status.ADDED);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Stores the valid cards of a single shard, which {@link CardWriter#saveAll(List)} does in one
+   * transaction. When that fails, each card is stored on its own so that a single bad card only
+   * fails itself, and the shards already committed are not written again.
+   *
+   * @param valid the indexes of the valid cards of the shard within the batch
+   * @return the number of cards stored
+   */
+  private int store(List<Integer> valid, List<Card> batch, CardBatchResult[] results) {
+    try {
+      cardWriter.saveAll(valid.stream().map(batch::get).collect(Collectors.toList()));
+      return valid.size();
+    } catch (Exception e) {
+      log.warn("Unable to store the {} cards of the shard, storing them one by one.",
+          valid.size(), e);
+    }
+    int stored = 0;
+    for (int i : valid) {
+      try {
+        cardWriter.save(batch.get(i));
+        stored++;
+      } catch (Exception e) {
+        log.error("Unable to store the card at the index {}.", results[i].getIndex(), e);
+        results[i].setStatus(Status.FAILED);
+      }
+    }
+    return stored;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,160 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.SweepWatermark;
+import in.amigoscorp.cards.repository.CardKey;
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.repository.SweepWatermarkRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Flags the cards whose expiry date has passed as expired, in the background. Every sweep only
+ * visits the expiry months between the watermark, up to which the cards are already swept, and the
+ * current month, so it walks a narrow range of the expiry index instead of the whole table. The
+ * cards are flagged in chunks, each in its own transaction, and only their users are evicted from
+ * the cache.
+ *
+ * <p>Both the two digit (as printed on the card) and the four digit expiry years are swept.
+ *
+ * <p>The cards stored already expired, in a month before the watermark, are never visited again:
+ * the {@link CardWriter} flags them on insert, see {@link #hasExpired(Card, YearMonth)}.
+ *
+ * <p>Every shard is swept in turn and keeps its own watermark.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cards.expiry-sweeper", name = "enabled", matchIfMissing = true)
+public class CardExpirySweeper {
+
+  static final String WATERMARK = "card-expiry";
+
+  private final Logger log = LoggerFactory.getLogger(CardExpirySweeper.class);
+  private final CardRepository cardRepository;
+  private final SweepWatermarkRepository watermarkRepository;
+  private final CardsCache cardsCache;
+  private final ShardRouter shardRouter;
+  private final int chunkSize;
+  private final YearMonth initialWatermark;
+  private final Counter sweptCards;
+  private volatile double rowsPerSecond;
+  private volatile long lastCompletedAt = System.currentTimeMillis();
+
+  public CardExpirySweeper(CardRepository cardRepository,
+      SweepWatermarkRepository watermarkRepository, CardsCache cardsCache, ShardRouter shardRouter,
+      CardExpirySweeperProperties properties, MeterRegistry meterRegistry) {
+    this.cardRepository = cardRepository;
+    this.watermarkRepository = watermarkRepository;
+    this.cardsCache = cardsCache;
+    this.shardRouter = shardRouter;
+    this.chunkSize = properties.getChunkSize();
+    this.initialWatermark = YearMonth.parse(properties.getInitialWatermark());
+    this.sweptCards = Counter.builder("cards.expiry.sweeper.cards")
+        .description("The number of cards flagged as expired")
+        .register(meterRegistry);
+    Gauge.builder("cards.expiry.sweeper.rate", this, sweeper -> sweeper.rowsPerSecond)
+        .description("The number of cards flagged per second during the last sweep")
+        .register(meterRegistry);
+    TimeGauge.builder("cards.expiry.sweeper.lag", this, TimeUnit.MILLISECONDS,
+            sweeper -> System.currentTimeMillis() - sweeper.lastCompletedAt)
+        .description("The time since the last sweep completed")
+        .register(meterRegistry);
+  }
+
+  @Scheduled(fixedDelayString = "${cards.expiry-sweeper.interval:PT1H}",
+      initialDelayString = "${cards.expiry-sweeper.initial-delay:PT1M}")
+  public void sweep() {
+    YearMonth now = YearMonth.now();
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      try {
+        shardRouter.onShard(shard, () -> sweep(now));
+      } catch (Exception e) {
+        log.error("Unable to sweep the expired cards of the shard {}, the sweep resumes on the"
+            + " next run.", shard, e);
+      }
+    }
+  }
+
+  /**
+   * Flags the cards of the current shard that expired before the given month and moves the
+   * watermark of the shard to it.
+   *
+   * @param now the current month
+   * @return the number of cards flagged
+   */
+  int sweep(YearMonth now) {
+    YearMonth watermark = watermarkRepository.findById(WATERMARK)
+        .map(saved -> YearMonth.of(saved.getWatermarkYear(), saved.getWatermarkMonth()))
+        .orElse(initialWatermark);
+    if (!watermark.isBefore(now)) {
+      lastCompletedAt = System.currentTimeMillis();
+      return 0;
+    }
+    long start = System.nanoTime();
+    int swept = sweepRange(watermark.getYear(), watermark.getMonthValue(), now.getYear(),
+        now.getMonthValue());
+    swept += sweepRange(watermark.getYear() % 100, watermark.getMonthValue(), now.getYear() % 100,
+        now.getMonthValue());
+    watermarkRepository.save(new SweepWatermark(WATERMARK, now.getYear(), now.getMonthValue()));
+
+    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    rowsPerSecond = swept * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    lastCompletedAt = System.currentTimeMillis();
+    log.info("Flagged {} cards expired between {} and {}.", swept, watermark, now);
+    return swept;
+  }
+
+  /**
+   * Tells whether the card expired before the given month, as a sweep up to that month would flag
+   * it.
+   *
+   * @param card {@link Card}
+   * @param now  the current month
+   * @return whether the card has expired, {@code false} when its expiry date is unknown
+   */
+  static boolean hasExpired(Card card, YearMonth now) {
+    if (card.getExpiryYear() == null || card.getExpiryMonth() == null) {
+      return false;
+    }
+    int year = card.getExpiryYear();
+    int currentYear = year < 100 ? now.getYear() % 100 : now.getYear();
+    return year < currentYear
+        || year == currentYear && card.getExpiryMonth() < now.getMonthValue();
+  }
+
+  private int sweepRange(int fromYear, int fromMonth, int toYear, int toMonth) {
+    int swept = 0;
+    List<CardKey> chunk;
+    do {
+      // Flagged cards drop out of the candidates, hence the next chunk is always the first page.
+      chunk = cardRepository.findExpiryCandidates(fromYear, fromMonth, toYear, toMonth,
+          PageRequest.of(0, chunkSize));
+      if (chunk.isEmpty()) {
+        break;
+      }
+      int flagged = cardRepository.markExpired(
+          chunk.stream().map(CardKey::getCardNumber).collect(Collectors.toList()));
+      Set<Long> userIds = chunk.stream().map(CardKey::getUserId).filter(Objects::nonNull)
+          .collect(Collectors.toSet());
+      userIds.forEach(cardsCache::invalidate);
+      sweptCards.increment(flagged);
+      swept += flagged;
+    } while (chunk.size() == chunkSize);
+    return swept;
+  }
+}
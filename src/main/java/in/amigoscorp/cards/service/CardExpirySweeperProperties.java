@@ -0,0 +1,27 @@
+package in.amigoscorp.cards.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The tuning knobs of the background sweep that flags the expired cards.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.expiry-sweeper")
+public class CardExpirySweeperProperties {
+
+  private boolean enabled = true;
+  /**
+   * The delay between the end of a sweep and the start of the next one.
+   */
+  private Duration interval = Duration.ofHours(1);
+  /**
+   * The number of cards flagged per statement and transaction.
+   */
+  private int chunkSize = 1_000;
+  /**
+   * The month, formatted as {@code yyyy-MM}, the very first sweep starts from.
+   */
+  private String initialWatermark = "2000-01";
+}
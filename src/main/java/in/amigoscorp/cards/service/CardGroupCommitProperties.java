@@ -0,0 +1,36 @@
+package in.amigoscorp.cards.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The tuning knobs of the group commit of the cards added one at a time.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.group-commit")
+public class CardGroupCommitProperties {
+
+  /**
+   * Whether the concurrent additions are committed together. Otherwise every card is committed in
+   * its own transaction.
+   */
+  private boolean enabled = true;
+  /**
+   * The maximum number of cards committed per transaction.
+   */
+  private int maxBatchSize = 100;
+  /**
+   * The maximum time the first card of a group waits for more cards to join it.
+   */
+  private Duration maxDelay = Duration.ofMillis(2);
+  /**
+   * The maximum number of cards waiting to be committed, beyond which the additions are rejected.
+   */
+  private int queueCapacity = 10_000;
+  /**
+   * The maximum time the addition of a card waits for it to be verified and committed, after which
+   * it is reported as not stored.
+   */
+  private Duration addTimeout = Duration.ofSeconds(10);
+}
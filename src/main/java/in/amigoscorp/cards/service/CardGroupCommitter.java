@@ -0,0 +1,227 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Commits the cards added concurrently in groups, so that the commit rate of the data store does
+ * not bound the rate of the additions. The cards are queued and a single committer thread stores
+ * them together, through {@link CardWriter#saveAll(List)}, once
+ * {@link CardGroupCommitProperties#getMaxBatchSize()} cards are queued or the first of them waited
+ * for {@link CardGroupCommitProperties#getMaxDelay()}. While a group commits, the next one builds
+ * up, so the groups grow with the load.
+ *
+ * <p>The addition of a card completes once its group commits. A group is committed in a
+ * transaction per shard; when the cards of a shard fail, only they are committed one by one, so
+ * that a single bad card only fails itself and the shards already committed are not written again.
+ */
+@Component
+public class CardGroupCommitter {
+
+  private static final long IDLE_MILLIS = 100;
+
+  private final Logger log = LoggerFactory.getLogger(CardGroupCommitter.class);
+  private final CardWriter cardWriter;
+  private final ShardRouter shardRouter;
+  private final boolean enabled;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final BlockingQueue<PendingCard> queue;
+  private final DistributionSummary groupSize;
+  private final Timer commitWait;
+  private final Counter failures;
+  private final Thread committer;
+  private volatile boolean running = true;
+
+  public CardGroupCommitter(CardWriter cardWriter, ShardRouter shardRouter,
+      CardGroupCommitProperties properties, MeterRegistry meterRegistry) {
+    this.cardWriter = cardWriter;
+    this.shardRouter = shardRouter;
+    this.enabled = properties.isEnabled();
+    this.maxBatchSize = properties.getMaxBatchSize();
+    this.maxDelayNanos = properties.getMaxDelay().toNanos();
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    this.groupSize = DistributionSummary.builder("cards.group.commit.size")
+        .description("The number of cards committed together")
+        .register(meterRegistry);
+    this.commitWait = Timer.builder("cards.group.commit.wait")
+        .description("The time between queueing a card and committing its group")
+        .register(meterRegistry);
+    this.failures = Counter.builder("cards.group.commit.failures")
+        .description("The number of queued cards that failed to commit")
+        .register(meterRegistry);
+    Gauge.builder("cards.group.commit.queue", queue, BlockingQueue::size)
+        .description("The number of cards waiting to be committed")
+        .register(meterRegistry);
+    this.committer = new Thread(this::commitGroups, "card-group-committer");
+    this.committer.setDaemon(true);
+  }
+
+  @PostConstruct
+  void start() {
+    if (enabled) {
+      committer.start();
+    }
+  }
+
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    running = false;
+    if (enabled) {
+      committer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    // The cards queued after the committer stopped are never committed.
+    List<PendingCard> abandoned = new ArrayList<>();
+    queue.drainTo(abandoned);
+    abandoned.forEach(this::abandon);
+  }
+
+  /**
+   * Queues the card to be committed with the cards added concurrently.
+   *
+   * @param card {@link Card} whose card number is already secured
+   * @return a future completing once the card is committed, or exceptionally when it is not
+   */
+  public CompletableFuture<Void> submit(Card card) {
+    if (!enabled) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      try {
+        cardWriter.save(card);
+        future.complete(null);
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+      return future;
+    }
+    PendingCard pending = new PendingCard(card);
+    if (!running) {
+      abandon(pending);
+    } else if (!queue.offer(pending)) {
+      failures.increment();
+      pending.future.completeExceptionally(
+          new RejectedExecutionException("Too many cards are waiting to be committed."));
+    } else if (!running && queue.remove(pending)) {
+      // Queued once the shutdown started, possibly after its drain. Unless the committer or the
+      // drain took it, nothing else ever will.
+      abandon(pending);
+    }
+    return pending.future;
+  }
+
+  private void abandon(PendingCard pending) {
+    pending.future.completeExceptionally(
+        new RejectedExecutionException("The application is shutting down."));
+  }
+
+  private void commitGroups() {
+    List<PendingCard> group = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingCard first = queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        group.add(first);
+        fill(group, first.queuedAt + maxDelayNanos);
+        commit(group);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.error("Interrupted while waiting for the cards to commit.", e);
+        running = false;
+      } catch (RuntimeException e) {
+        log.error("Unable to commit the group of {} cards.", group.size(), e);
+        group.forEach(pending -> pending.future.completeExceptionally(e));
+      } finally {
+        group.clear();
+      }
+    }
+  }
+
+  /**
+   * Adds the queued cards to the group until it is full or the deadline passes.
+   */
+  private void fill(List<PendingCard> group, long deadline) throws InterruptedException {
+    while (group.size() < maxBatchSize) {
+      queue.drainTo(group, maxBatchSize - group.size());
+      long remaining = deadline - System.nanoTime();
+      if (group.size() == maxBatchSize || remaining <= 0) {
+        return;
+      }
+      PendingCard next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      group.add(next);
+    }
+  }
+
+  private void commit(List<PendingCard> group) {
+    groupSize.record(group.size());
+    Map<Integer, List<PendingCard>> shards = shardRouter.partition(group,
+        pending -> pending.card.getUserId());
+    for (List<PendingCard> shard : shards.values()) {
+      commitShard(shard);
+    }
+  }
+
+  /**
+   * Commits the cards of a single shard, which {@link CardWriter#saveAll(List)} does in a single
+   * transaction, hence either all of them or none are committed.
+   */
+  private void commitShard(List<PendingCard> group) {
+    try {
+      cardWriter.saveAll(group.stream().map(pending -> pending.card)
+          .collect(Collectors.toList()));
+      group.forEach(this::complete);
+      return;
+    } catch (Exception e) {
+      log.warn("Unable to commit the group of {} cards, committing them one by one.",
+          group.size(), e);
+    }
+    for (PendingCard pending : group) {
+      try {
+        cardWriter.save(pending.card);
+        complete(pending);
+      } catch (Exception e) {
+        log.error("Unable to commit the card of the user {}.", pending.card.getUserId(), e);
+        failures.increment();
+        pending.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private void complete(PendingCard pending) {
+    commitWait.record(System.nanoTime() - pending.queuedAt, TimeUnit.NANOSECONDS);
+    pending.future.complete(null);
+  }
+
+  private static final class PendingCard {
+
+    private final Card card;
+    private final long queuedAt = System.nanoTime();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private PendingCard(Card card) {
+      this.card = card;
+    }
+  }
+}
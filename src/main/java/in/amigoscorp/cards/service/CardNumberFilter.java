@@ -0,0 +1,203 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * An in-memory {@link ScalableBloomFilter} of the hashed card numbers of every stored card, which
+ * tells the {@link CardWriter} the cards that are definitely new, so that they are inserted
+ * without being looked up first. It is built on startup by streaming the card numbers of every
+ * shard and every card written afterwards is put into it.
+ *
+ * <p>A Bloom filter cannot forget, so the removed cards stay in it and are merged if they are ever
+ * added again. Once they exceed {@link CardNumberFilterProperties#getStaleRatio()} of the filter,
+ * it is rebuilt. The cards stored by other instances, or while the filter is being built, are
+ * missing from it: the writer retries their insert as a merge.
+ *
+ * <p>Until the filter is built, every card is reported as probably stored. Its expected false
+ * positive rate, memory and size are published as {@code cards.card.filter.*} metrics.
+ */
+@Component
+public class CardNumberFilter implements ApplicationRunner {
+
+  private final Logger log = LoggerFactory.getLogger(CardNumberFilter.class);
+  private final CardRepository cardRepository;
+  private final ShardRouter shardRouter;
+  private final TransactionTemplate transactionTemplate;
+  private final CardNumberFilterProperties properties;
+  private final AtomicLong removed = new AtomicLong();
+  private final Counter absent;
+  private final Counter present;
+  private final Counter staleAbsent;
+  /**
+   * Held for reading by the puts and for writing while the filters are swapped, so that every put
+   * reaches the filter swapped in.
+   */
+  private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+  private volatile ScalableBloomFilter filter;
+  /**
+   * The filter being built, which receives the card numbers put meanwhile as well.
+   */
+  private volatile ScalableBloomFilter building;
+
+  public CardNumberFilter(CardRepository cardRepository, ShardRouter shardRouter,
+      PlatformTransactionManager transactionManager, CardNumberFilterProperties properties,
+      MeterRegistry meterRegistry) {
+    this.cardRepository = cardRepository;
+    this.shardRouter = shardRouter;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.properties = properties;
+    this.absent = lookups(meterRegistry, "absent");
+    this.present = lookups(meterRegistry, "present");
+    this.staleAbsent = Counter.builder("cards.card.filter.stale")
+        .description("The number of writes that found a card reported absent already stored")
+        .register(meterRegistry);
+    Gauge.builder("cards.card.filter.false.positive.rate", this,
+            cardNumberFilter -> cardNumberFilter.measure(ScalableBloomFilter::expectedFpp))
+        .description("The expected share of the new cards reported as probably stored")
+        .register(meterRegistry);
+    Gauge.builder("cards.card.filter.memory", this,
+            cardNumberFilter -> cardNumberFilter.measure(ScalableBloomFilter::bytes))
+        .description("The memory taken by the bits of the filter")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    Gauge.builder("cards.card.filter.size", this,
+            cardNumberFilter -> cardNumberFilter.measure(ScalableBloomFilter::approximateSize))
+        .description("The approximate number of card numbers in the filter")
+        .register(meterRegistry);
+    Gauge.builder("cards.card.filter.slices", this,
+            cardNumberFilter -> cardNumberFilter.measure(ScalableBloomFilter::sliceCount))
+        .description("The number of fixed size filters the filter has grown to")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (properties.isEnabled()) {
+      rebuild();
+    }
+  }
+
+  /**
+   * @param cardNumber the hashed card number
+   * @return {@code false} when the card is definitely not stored, {@code true} when it probably is
+   */
+  public boolean mightContain(String cardNumber) {
+    ScalableBloomFilter current = filter;
+    boolean mightContain = current == null || current.mightContain(cardNumber);
+    (mightContain ? present : absent).increment();
+    return mightContain;
+  }
+
+  /**
+   * Puts the card number of a card about to be stored.
+   *
+   * @param cardNumber the hashed card number
+   */
+  public void put(String cardNumber) {
+    swapLock.readLock().lock();
+    try {
+      ScalableBloomFilter current = filter;
+      if (current != null) {
+        current.put(cardNumber);
+      }
+      ScalableBloomFilter next = building;
+      if (next != null) {
+        next.put(cardNumber);
+      }
+    } finally {
+      swapLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Records that a stored card was removed.
+   */
+  public void removed() {
+    removed.incrementAndGet();
+  }
+
+  /**
+   * Records that a card reported absent turned out to be stored.
+   */
+  void stale() {
+    staleAbsent.increment();
+  }
+
+  @Scheduled(fixedDelayString = "${cards.card-number-filter.check-interval:PT10M}",
+      initialDelayString = "${cards.card-number-filter.check-interval:PT10M}")
+  public void rebuildIfStale() {
+    ScalableBloomFilter current = filter;
+    if (current != null && removed.get() > properties.getStaleRatio() * current.approximateSize()) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Builds the filter anew from the card numbers of every shard and swaps it in.
+   */
+  public synchronized void rebuild() {
+    long start = System.nanoTime();
+    ScalableBloomFilter next = new ScalableBloomFilter(properties.getInitialCapacity(),
+        properties.getFalsePositiveProbability(), properties.getGrowthFactor(),
+        properties.getTighteningRatio());
+    swap(filter, next);
+    removed.set(0);
+    try {
+      for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+        shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+          try (Stream<String> cardNumbers = cardRepository.streamAllCardNumbers()) {
+            cardNumbers.forEach(next::put);
+          }
+          return null;
+        }));
+      }
+      swap(next, null);
+    } catch (Exception e) {
+      log.error("Unable to build the card number filter.", e);
+      swap(filter, null);
+      return;
+    }
+    log.info("Built the card number filter of {} cards in {} ms.", next.approximateSize(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private void swap(ScalableBloomFilter current, ScalableBloomFilter next) {
+    swapLock.writeLock().lock();
+    try {
+      filter = current;
+      building = next;
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+  }
+
+  private double measure(ToDoubleFunction<ScalableBloomFilter> metric) {
+    ScalableBloomFilter current = filter;
+    return current == null ? 0 : metric.applyAsDouble(current);
+  }
+
+  private static Counter lookups(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("cards.card.filter.lookups")
+        .description("The number of card numbers looked up in the filter")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
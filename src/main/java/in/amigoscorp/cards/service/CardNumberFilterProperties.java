@@ -0,0 +1,44 @@
+package in.amigoscorp.cards.service;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The sizing of the {@link CardNumberFilter}.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.card-number-filter")
+public class CardNumberFilterProperties {
+
+  /**
+   * Whether the card numbers are looked up in the filter. When disabled, every card is merged.
+   */
+  private boolean enabled = true;
+  /**
+   * The number of card numbers the first filter is sized for.
+   */
+  private long initialCapacity = 1_000_000;
+  /**
+   * The false positive probability of the first filter.
+   */
+  private double falsePositiveProbability = 0.01;
+  /**
+   * How many times larger every filter appended is than the one before.
+   */
+  private int growthFactor = 2;
+  /**
+   * How much lower the false positive probability of every filter appended is than the one
+   * before.
+   */
+  private double tighteningRatio = 0.5;
+  /**
+   * The share of the card numbers in the filter that may be removed from the data store before it
+   * is rebuilt.
+   */
+  private double staleRatio = 0.25;
+  /**
+   * How often the share of the removed card numbers is checked.
+   */
+  private Duration checkInterval = Duration.ofMinutes(10);
+}
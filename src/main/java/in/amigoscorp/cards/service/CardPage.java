@@ -0,0 +1,22 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.repository.CardView;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A page of the cards of a user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardPage {
+
+  private List<CardView> cards;
+  /**
+   * The opaque cursor to fetch the next page with. {@code null} when this is the last page.
+   */
+  private String nextCursor;
+}
@@ -0,0 +1,50 @@
+package in.amigoscorp.cards.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The progress of a card submitted to be added, which is verified with its issuer and stored in
+ * the background.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardRegistration {
+
+  private String id;
+  private Long userId;
+  /**
+   * The masked card number, if the card number could be read.
+   */
+  private String hashedCardNumber;
+  private Status status;
+
+  /**
+   * @param status the status the card moved to
+   * @return a copy of this registration with the given status
+   */
+  public CardRegistration withStatus(Status status) {
+    return new CardRegistration(id, userId, hashedCardNumber, status);
+  }
+
+  public enum Status {
+    /**
+     * The card is being verified with its issuer and stored.
+     */
+    PENDING,
+    /**
+     * The card is stored.
+     */
+    ADDED,
+    /**
+     * The card details are invalid and the card is not stored.
+     */
+    REJECTED,
+    /**
+     * The card could not be verified or stored. It may be submitted again.
+     */
+    FAILED
+  }
+}
@@ -1,18 +1,49 @@
 package in.amigoscorp.cards.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import in.amigoscorp.cards.cache.CardVersions;
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.cache.UserCards;
+import in.amigoscorp.cards.codec.CardNumberCodec;
+import in.amigoscorp.cards.codec.EncodedCardNumber;
 import in.amigoscorp.cards.entity.Card;
 import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.issuer.IssuerResolver;
+import in.amigoscorp.cards.issuer.IssuerVerificationService;
+import in.amigoscorp.cards.journal.CacheOutcome;
+import in.amigoscorp.cards.journal.RequestJournal;
 import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.repository.CardView;
+import in.amigoscorp.cards.service.CardRegistration.Status;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import org.apache.commons.codec.digest.DigestUtils;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 /**
@@ -22,18 +53,49 @@ import org.springframework.stereotype.Service;
 @Service
 public class CardService {
 
+  static final int MAX_PAGE_SIZE = 1_000;
+  static final int MAX_BULK_USERS = 10_000;
+  static final String SERVICE_TIMER = "cards.service";
+
   private final Logger log = LoggerFactory.getLogger(CardService.class);
   private final CardRepository cardRepository;
-  private final LoadingCache<Long, List<Card>> cardsCache;
+  private final CardWriter cardWriter;
+  private final CardGroupCommitter cardGroupCommitter;
+  private final CardsCache cardsCache;
+  private final CardVersions cardVersions;
+  private final IssuerResolver issuerResolver;
+  private final CardNumberCodec cardNumberCodec;
+  private final IssuerVerificationService issuerVerificationService;
+  private final Executor cardsTaskExecutor;
+  private final RequestJournal requestJournal;
+  private final long addTimeoutNanos;
+  private final Counter cacheFallbacks;
+  private final ObjectWriter cardsWriter;
+  private final Cache<String, CardRegistration> registrations = CacheBuilder.newBuilder()
+      .maximumSize(100_000).expireAfterWrite(1, TimeUnit.HOURS).build();
 
-  public CardService(CardRepository cardRepository) {
+  public CardService(CardRepository cardRepository, CardWriter cardWriter,
+      CardGroupCommitter cardGroupCommitter, CardsCache cardsCache, CardVersions cardVersions,
+      IssuerResolver issuerResolver, CardNumberCodec cardNumberCodec,
+      IssuerVerificationService issuerVerificationService,
+      @Qualifier("cardsTaskExecutor") Executor cardsTaskExecutor, RequestJournal requestJournal,
+      CardGroupCommitProperties groupCommitProperties, MeterRegistry meterRegistry,
+      ObjectMapper objectMapper) {
     this.cardRepository = cardRepository;
-    cardsCache = CacheBuilder.newBuilder().build(new CacheLoader<Long, List<Card>>() {
-      @Override
-      public List<Card> load(Long userId) {
-        log.info("Fetching the cards information for the user id {}", userId);
-        return cardRepository.findAllByUserId(userId);
-      }
+    this.cardWriter = cardWriter;
+    this.cardGroupCommitter = cardGroupCommitter;
+    this.cardsCache = cardsCache;
+    this.cardVersions = cardVersions;
+    this.issuerResolver = issuerResolver;
+    this.cardNumberCodec = cardNumberCodec;
+    this.issuerVerificationService = issuerVerificationService;
+    this.cardsTaskExecutor = cardsTaskExecutor;
+    this.requestJournal = requestJournal;
+    this.addTimeoutNanos = groupCommitProperties.getAddTimeout().toNanos();
+    this.cacheFallbacks = Counter.builder("cards.cache.fallbacks")
+        .description("The number of reads that bypassed the cache as it failed to load the cards")
+        .register(meterRegistry);
+    this.cardsWriter = objectMapper.writerFor(new TypeReference<List<Card>>() {
     });
   }
 
@@ -44,13 +106,14 @@ public class CardService {
    * @param userId an unique user identifier
    * @return a list of cards information
    */
+  @Timed(value = SERVICE_TIMER, histogram = true)
   public List<Card> getAllCardsByUserId(Long userId) {
     try {
-      log.info("Fetching the cards from the cache.");
       return cardsCache.get(userId);
     } catch (ExecutionException e) {
       log.error("Unable to get the cards for the user id {}", userId);
-      log.info("Falling back to fetch from data store directly.");
+      requestJournal.cache(CacheOutcome.BYPASSED);
+      cacheFallbacks.increment();
       return cardRepository.findAllByUserId(userId);
     } catch (Exception ex) {
       log.error("Unable to get the cards for the user id {}", userId, ex);
@@ -58,28 +121,166 @@ public class CardService {
     }
   }
 
+  /**
+   * Get all the cards by the user identifier from the cache, as JSON. The JSON is encoded once per
+   * version of the cached cards and the same bytes are returned until the cards change. If they are
+   * not available in the cache, fallbacks to fetch and encode the same from the data store.
+   *
+   * @param userId an unique user identifier
+   * @return the JSON array of the cards information, {@code null} when the user has no cards. The
+   * bytes are shared, hence must not be modified.
+   */
+  @Timed(value = SERVICE_TIMER, histogram = true)
+  public byte[] getAllCardsJsonByUserId(Long userId) {
+    try {
+      UserCards userCards = cardsCache.getUserCards(userId);
+      return userCards.size() == 0 ? null : userCards.toJson(cardsWriter);
+    } catch (ExecutionException e) {
+      log.error("Unable to get the cards for the user id {}", userId);
+      requestJournal.cache(CacheOutcome.BYPASSED);
+      cacheFallbacks.increment();
+      return toJson(cardRepository.findAllByUserId(userId));
+    } catch (Exception ex) {
+      log.error("Unable to get the cards for the user id {}", userId, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Get the entity tag of the current cards of the user, which changes whenever they change. It is
+   * served from a version counter, without reading the cards.
+   *
+   * @param userId an unique user identifier
+   * @return the strong entity tag of the cards, without the quotes
+   */
+  public String getCardsETag(Long userId) {
+    return cardVersions.eTag(userId);
+  }
+
+  /**
+   * Get all the cards of each of the users from the cache. The users that are not cached are
+   * loaded together from the data store. If they cannot be loaded together, fallbacks to fetch the
+   * cards of each user on its own.
+   *
+   * @param userIds the unique user identifiers, at most {@value #MAX_BULK_USERS}
+   * @return the cards information of each user, in the order of the given users. Users without any
+   * card map to an empty list.
+   * @throws IllegalArgumentException when more than {@value #MAX_BULK_USERS} users are requested
+   */
+  @Timed(value = SERVICE_TIMER, histogram = true)
+  public Map<Long, List<Card>> getAllCardsByUserIds(Collection<Long> userIds) {
+    if (userIds.size() > MAX_BULK_USERS) {
+      throw new IllegalArgumentException("At most " + MAX_BULK_USERS + " users can be requested.");
+    }
+    Set<Long> distinctUserIds = new LinkedHashSet<>(userIds);
+    distinctUserIds.remove(null);
+    try {
+      return cardsCache.getAll(distinctUserIds);
+    } catch (ExecutionException e) {
+      log.error("Unable to get the cards for {} users", distinctUserIds.size());
+      requestJournal.cache(CacheOutcome.BYPASSED);
+      cacheFallbacks.increment();
+      Map<Long, List<Card>> cards = new LinkedHashMap<>();
+      distinctUserIds.forEach(userId -> cards.put(userId, getAllCardsByUserId(userId)));
+      return cards;
+    }
+  }
+
+  /**
+   * Get a page of the cards by the user identifier directly from the data store, selecting only the
+   * displayed columns. The pages are ordered by the card number and seek past the card the cursor
+   * points at, so that every page costs the same irrespective of its position.
+   *
+   * @param userId an unique user identifier
+   * @param cursor the cursor returned along with the previous page, {@code null} for the first page
+   * @param limit  the maximum number of cards in the page, capped at {@value #MAX_PAGE_SIZE}
+   * @return a page of the cards information
+   * @throws IllegalArgumentException when the cursor is malformed
+   */
+  @Timed(value = SERVICE_TIMER, histogram = true)
+  public CardPage getCardsPage(Long userId, String cursor, int limit) {
+    int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    // One extra card tells whether there is a next page without a count query.
+    Pageable pageable = PageRequest.of(0, pageSize + 1);
+    List<CardView> cards = StringUtils.isEmpty(cursor)
+        ? cardRepository.findByUserIdOrderByCardNumberAsc(userId, pageable)
+        : cardRepository.findByUserIdAndCardNumberGreaterThanOrderByCardNumberAsc(userId,
+            decodeCursor(cursor), pageable);
+    if (cards.size() <= pageSize) {
+      return new CardPage(cards, null);
+    }
+    List<CardView> page = cards.subList(0, pageSize);
+    return new CardPage(page, encodeCursor(page.get(pageSize - 1).getCardNumber()));
+  }
+
+  /**
+   * Submit the card information to be added securely. The card number is hashed and masked right
+   * away, while the verification with the card issuer and the storing happen in the background.
+   *
+   * @param card {@link Card}
+   * @return the registration of the card, whose progress can be followed with {@link
+   * #getRegistration(String)}. {@link Status#REJECTED} when the card details cannot be read.
+   */
+  @Timed(value = SERVICE_TIMER, histogram = true)
+  public CardRegistration submitCard(Card card) {
+    CardRegistration registration = new CardRegistration(UUID.randomUUID().toString(),
+        card.getUserId(), null, Status.PENDING);
+    try {
+      if (!secureCard(card)) {
+        log.error("The card number provided is invalid.");
+        return registration.withStatus(Status.REJECTED);
+      }
+      registration.setHashedCardNumber(card.getHashedCardNumber());
+    } catch (Exception e) {
+      log.error("Unable to add the card.", e);
+      return registration.withStatus(Status.REJECTED);
+    }
+    registrations.put(registration.getId(), registration);
+    verifyAndStore(card).whenComplete((status, error) -> {
+      if (error != null) {
+        log.error("Unable to add the card.", error);
+      }
+      registrations.put(registration.getId(),
+          registration.withStatus(error == null ? status : Status.FAILED));
+    });
+    return registration;
+  }
+
+  /**
+   * Get the progress of a card submitted to be added.
+   *
+   * @param registrationId the identifier of the registration returned by {@link #submitCard(Card)}
+   * @return the registration of the card, {@code null} when it is unknown or too old
+   */
+  @Timed(value = SERVICE_TIMER, histogram = true)
+  public CardRegistration getRegistration(String registrationId) {
+    return registrations.getIfPresent(registrationId);
+  }
+
   /**
    * Add the card information securely by hashing the card number and masking the card number except
-   * the last 4 digits for representational purpose.
+   * the last 4 digits for representational purpose. Waits for the card to be verified and stored,
+   * up to {@link CardGroupCommitProperties#getAddTimeout()}.
    *
    * @param card {@link Card}
    * @return the status of whether the card information is stored to data store or not. {@code true}
    * represents the card is stored. {@code false} represents the card is not stored.
    */
+  @Timed(value = SERVICE_TIMER, histogram = true)
   public boolean addCard(Card card) {
     try {
-      log.info("Adding the card information securely");
-      card.setHashedCardNumber(hashCardNumber(card.getCardNumber()));
-      card.setCardNumber(DigestUtils.shaHex(card.getCardNumber()));
-      boolean areCardDetailsValid = verifyCardDetails(card);
-      if (areCardDetailsValid) {
-        cardRepository.save(card);
-        cardsCache.refresh(card.getUserId());
-        return true;
-      } else {
-        log.error("The card details provided are invalid.");
+      if (!secureCard(card)) {
+        log.error("The card number provided is invalid.");
         return false;
       }
+      return verifyAndStore(card).get(addTimeoutNanos, TimeUnit.NANOSECONDS) == Status.ADDED;
+    } catch (TimeoutException e) {
+      log.error("Timed out adding the card, it may still be stored.");
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while adding the card.", e);
+      return false;
     } catch (Exception e) {
       log.error("Unable to add the card.", e);
       return false;
@@ -93,11 +294,10 @@ public class CardService {
    * @return the status of whether the card information is removed from the data store or not.
    * {@code true} represents the card is removed. {@code false} represents the card is not removed.
    */
+  @Timed(value = SERVICE_TIMER, histogram = true)
   public boolean deleteCard(Card card) {
     try {
-      log.info("Deleting the card information securely");
-      cardRepository.delete(card);
-      cardsCache.refresh(card.getUserId());
+      cardWriter.delete(card);
       return true;
     } catch (Exception e) {
       log.error("Unable to delete the card.", e);
@@ -106,25 +306,70 @@ public class CardService {
   }
 
   /**
-   * A utility method to convert the card number to a masked card number
+   * Secure the card by replacing its card number with the keyed hash of it and keeping the masked
+   * card number for representational purpose. The check digit of the card number is verified and
+   * its issuer is resolved from its leading digits, replacing the one provided, so that an invalid
+   * card never reaches the card issuer nor the data store.
    *
-   * @param cardNumber actual card number
-   * @return the masked card number
+   * @param card {@link Card} carrying the actual card number
+   * @return whether the card number is valid and belongs to a known issuer. The card is left
+   * untouched when it is not.
    */
-  private String hashCardNumber(String cardNumber) {
-    String substring = StringUtils.substring(cardNumber, 0, cardNumber.length() - 4);
-    String hash = StringUtils.repeat("X", substring.length());
-    return StringUtils.replace(cardNumber, substring, hash);
+  boolean secureCard(Card card) {
+    if (card.getCardNumber() == null) {
+      return false;
+    }
+    char[] cardNumber = card.getCardNumber().toCharArray();
+    CardIssuer cardIssuer = issuerResolver.resolve(cardNumber);
+    EncodedCardNumber encodedCardNumber = cardNumberCodec.encode(cardNumber);
+    if (cardIssuer == null || !encodedCardNumber.isValid()) {
+      return false;
+    }
+    if (cardIssuer != card.getCardIssuer()) {
+      log.warn("The card issuer provided {} does not match the card number, using {}",
+          card.getCardIssuer(), cardIssuer);
+      card.setCardIssuer(cardIssuer);
+    }
+    card.setHashedCardNumber(encodedCardNumber.getMaskedCardNumber());
+    card.setCardNumber(encodedCardNumber.getHash());
+    return true;
+  }
+
+  private byte[] toJson(List<Card> cards) {
+    if (cards.isEmpty()) {
+      return null;
+    }
+    try {
+      return cardsWriter.writeValueAsBytes(cards);
+    } catch (JsonProcessingException e) {
+      log.error("Unable to encode the cards.", e);
+      return null;
+    }
+  }
+
+  private static String encodeCursor(String cardNumber) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(cardNumber.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodeCursor(String cursor) {
+    return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
   }
 
   /**
-   * Verify the card details by calling the card issuer
+   * Verify the card details by calling the card issuer and store the card once they are valid, off
+   * the calling thread. The card is committed together with the cards added concurrently.
    *
-   * @param card {@link Card}
-   * @return whether the card details are valid or not. {@code true} represents the card details are
-   * valid. {@code false} represents the card details are not valid.
+   * @param card {@link Card} whose card number is already secured
+   * @return a future of whether the card is stored or rejected as invalid
    */
-  private boolean verifyCardDetails(Card card) {
-    return card.getCardIssuer().equals(CardIssuer.MASTERCARD);
+  private CompletableFuture<Status> verifyAndStore(Card card) {
+    return issuerVerificationService.verify(card).thenComposeAsync(areCardDetailsValid -> {
+      if (!areCardDetailsValid) {
+        log.error("The card details provided are invalid.");
+        return CompletableFuture.completedFuture(Status.REJECTED);
+      }
+      return cardGroupCommitter.submit(card).thenApply(committed -> Status.ADDED);
+    }, cardsTaskExecutor);
   }
 }
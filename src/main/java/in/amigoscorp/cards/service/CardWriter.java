@@ -0,0 +1,193 @@
+package in.amigoscorp.cards.service;
+
+import com.google.common.util.concurrent.Striped;
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardChangeType;
+import in.amigoscorp.cards.entity.CardOutboxEvent;
+import in.amigoscorp.cards.event.CardChangePublisher;
+import in.amigoscorp.cards.repository.CardOutboxRepository;
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Persists the cards in transactions. The inserts and updates of a transaction are sent to the
+ * data store in JDBC batches of {@code spring.jpa.properties.hibernate.jdbc.batch_size}.
+ *
+ * <p>Every transaction also writes an outbox event per card, which is published to the
+ * {@link CardChangePublisher} once committed, and then patches the {@link CardsCache}. The users of
+ * the cards are locked from the start of the transaction until the cache is patched, so the events
+ * of a user are published, and its cached cards patched, in the order of its changes.
+ *
+ * <p>The cards the {@link CardNumberFilter} has never seen are inserted without being looked up
+ * first, the others are merged. When a card reported absent is stored after all, the transaction
+ * is retried with every card merged.
+ *
+ * <p>The cards of different shards are written in a transaction per shard, one shard after the
+ * other. When one of them fails, the shards before it are already committed.
+ *
+ * <p>The cards stored with an expiry month that has already passed are flagged as expired, as the
+ * {@link CardExpirySweeper} does not sweep the months behind its watermark again.
+ */
+@Component
+public class CardWriter {
+
+  private final Logger log = LoggerFactory.getLogger(CardWriter.class);
+  private final CardRepository cardRepository;
+  private final CardOutboxRepository outboxRepository;
+  private final CardChangePublisher cardChangePublisher;
+  private final TransactionTemplate transactionTemplate;
+  private final ShardRouter shardRouter;
+  private final CardNumberFilter cardNumberFilter;
+  private final CardsCache cardsCache;
+  private final Striped<Lock> userLocks = Striped.lock(256);
+
+  public CardWriter(CardRepository cardRepository, CardOutboxRepository outboxRepository,
+      CardChangePublisher cardChangePublisher, PlatformTransactionManager transactionManager,
+      ShardRouter shardRouter, CardNumberFilter cardNumberFilter, CardsCache cardsCache) {
+    this.cardRepository = cardRepository;
+    this.outboxRepository = outboxRepository;
+    this.cardChangePublisher = cardChangePublisher;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.shardRouter = shardRouter;
+    this.cardNumberFilter = cardNumberFilter;
+    this.cardsCache = cardsCache;
+  }
+
+  /**
+   * Stores all the cards in a single transaction per shard.
+   *
+   * @param cards the cards whose card number is already secured
+   */
+  public void saveAll(List<Card> cards) {
+    flagExpired(cards);
+    write(cards, CardChangeType.ADDED, this::insertOrMerge);
+  }
+
+  /**
+   * Stores the card in its own transaction.
+   *
+   * @param card {@link Card} whose card number is already secured
+   */
+  public void save(Card card) {
+    flagExpired(Collections.singletonList(card));
+    write(Collections.singletonList(card), CardChangeType.ADDED, this::insertOrMerge);
+  }
+
+  /**
+   * Removes the card in its own transaction.
+   *
+   * @param card {@link Card}
+   */
+  public void delete(Card card) {
+    write(Collections.singletonList(card), CardChangeType.REMOVED,
+        cards -> cardRepository.delete(card));
+    cardNumberFilter.removed();
+  }
+
+  private void write(List<Card> cards, CardChangeType type, Consumer<List<Card>> change) {
+    Map<Integer, List<Card>> shards = shardRouter.partition(cards, Card::getUserId);
+    for (Map.Entry<Integer, List<Card>> shard : shards.entrySet()) {
+      shardRouter.onShard(shard.getKey(), () -> writeShard(shard.getValue(), type, change));
+    }
+  }
+
+  private void writeShard(List<Card> cards, CardChangeType type, Consumer<List<Card>> change) {
+    // The stripes come in a fixed order, so two writers never wait for each other's locks.
+    Iterable<Lock> locks = userLocks.bulkGet(cards.stream()
+        .map(card -> Objects.hashCode(card.getUserId())).collect(Collectors.toList()));
+    List<Lock> held = new ArrayList<>();
+    try {
+      for (Lock lock : locks) {
+        lock.lock();
+        held.add(lock);
+      }
+      List<CardOutboxEvent> events;
+      try {
+        events = commit(cards, type, change);
+      } catch (DataIntegrityViolationException e) {
+        if (type != CardChangeType.ADDED) {
+          throw e;
+        }
+        log.warn("A card reported absent by the filter is already stored, merging {} cards.",
+            cards.size());
+        cardNumberFilter.stale();
+        events = commit(cards, type, cardRepository::saveAll);
+      }
+      cardChangePublisher.publish(events);
+      patchCache(cards, type);
+    } finally {
+      for (Lock lock : held) {
+        lock.unlock();
+      }
+    }
+  }
+
+  private List<CardOutboxEvent> commit(List<Card> cards, CardChangeType type,
+      Consumer<List<Card>> change) {
+    return transactionTemplate.execute(status -> {
+      change.accept(cards);
+      return outboxRepository.saveAll(outbox(cards, type));
+    });
+  }
+
+  private void patchCache(List<Card> cards, CardChangeType type) {
+    if (type == CardChangeType.ADDED) {
+      cardsCache.cardsAdded(cards);
+    } else {
+      cards.forEach(cardsCache::cardRemoved);
+    }
+  }
+
+  /**
+   * Inserts the cards that are definitely not stored and merges the others. A card number
+   * repeated within the cards is merged from its second occurrence on.
+   */
+  private void insertOrMerge(List<Card> cards) {
+    List<Card> inserts = new ArrayList<>(cards.size());
+    List<Card> merges = new ArrayList<>();
+    for (Card card : cards) {
+      (cardNumberFilter.mightContain(card.getCardNumber()) ? merges : inserts).add(card);
+      cardNumberFilter.put(card.getCardNumber());
+    }
+    if (!inserts.isEmpty()) {
+      cardRepository.insertAll(inserts);
+    }
+    if (!merges.isEmpty()) {
+      cardRepository.saveAll(merges);
+    }
+  }
+
+  private static void flagExpired(List<Card> cards) {
+    YearMonth now = YearMonth.now();
+    for (Card card : cards) {
+      if (!card.isExpired() && CardExpirySweeper.hasExpired(card, now)) {
+        card.setExpired(true);
+      }
+    }
+  }
+
+  private static List<CardOutboxEvent> outbox(List<Card> cards, CardChangeType type) {
+    long now = System.currentTimeMillis();
+    List<CardOutboxEvent> events = new ArrayList<>(cards.size());
+    for (Card card : cards) {
+      events.add(new CardOutboxEvent(null, type, card.getUserId(), card.getCardNumber(), now));
+    }
+    return events;
+  }
+}
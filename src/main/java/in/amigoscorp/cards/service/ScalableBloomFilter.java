@@ -0,0 +1,132 @@
+package in.amigoscorp.cards.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A Bloom filter that grows with the number of items put into it. It is a chain of fixed size
+ * filters: once the last one holds as many items as it was sized for, a larger one is appended
+ * with a tighter false positive probability, so the probability of the whole chain stays below
+ * {@code falsePositiveProbability / (1 - tighteningRatio)} however much it grows.
+ *
+ * <p>Puts and lookups are safe to run concurrently and never lock, except for the put that
+ * appends a filter.
+ */
+final class ScalableBloomFilter {
+
+  private final int growthFactor;
+  private final double tighteningRatio;
+  private final List<Slice> slices = new CopyOnWriteArrayList<>();
+  private volatile Slice last;
+
+  /**
+   * @param initialCapacity          the number of items the first filter is sized for
+   * @param falsePositiveProbability the false positive probability of the first filter
+   * @param growthFactor             how many times larger every filter is than the one before
+   * @param tighteningRatio          how much lower the false positive probability of every filter
+   *                                 is than the one before, below 1
+   */
+  ScalableBloomFilter(long initialCapacity, double falsePositiveProbability, int growthFactor,
+      double tighteningRatio) {
+    if (growthFactor < 1 || tighteningRatio <= 0 || tighteningRatio >= 1) {
+      throw new IllegalArgumentException("Unexpected growth factor " + growthFactor
+          + " or tightening ratio " + tighteningRatio);
+    }
+    this.growthFactor = growthFactor;
+    this.tighteningRatio = tighteningRatio;
+    append(new Slice(Math.max(1, initialCapacity), falsePositiveProbability));
+  }
+
+  /**
+   * @return {@code false} when the item was definitely never put, {@code true} when it probably
+   * was
+   */
+  boolean mightContain(String item) {
+    for (Slice slice : slices) {
+      if (slice.filter.mightContain(item)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void put(String item) {
+    if (mightContain(item)) {
+      return;
+    }
+    Slice slice = last;
+    slice.filter.put(item);
+    if (slice.filter.approximateElementCount() >= slice.capacity) {
+      grow(slice);
+    }
+  }
+
+  /**
+   * @return the approximate number of distinct items put
+   */
+  long approximateSize() {
+    long size = 0;
+    for (Slice slice : slices) {
+      size += slice.filter.approximateElementCount();
+    }
+    return size;
+  }
+
+  /**
+   * @return the probability that an item never put is reported as put, given the items put so far
+   */
+  double expectedFpp() {
+    double none = 1;
+    for (Slice slice : slices) {
+      none *= 1 - slice.filter.expectedFpp();
+    }
+    return 1 - none;
+  }
+
+  /**
+   * @return the number of bytes taken by the bits of the filters
+   */
+  long bytes() {
+    long bits = 0;
+    for (Slice slice : slices) {
+      bits += slice.bits;
+    }
+    return bits / Byte.SIZE;
+  }
+
+  int sliceCount() {
+    return slices.size();
+  }
+
+  private synchronized void grow(Slice full) {
+    if (last == full) {
+      append(new Slice(full.capacity * growthFactor, full.fpp * tighteningRatio));
+    }
+  }
+
+  private void append(Slice slice) {
+    slices.add(slice);
+    last = slice;
+  }
+
+  private static final class Slice {
+
+    private final BloomFilter<CharSequence> filter;
+    private final long capacity;
+    private final double fpp;
+    private final long bits;
+
+    private Slice(long capacity, double fpp) {
+      this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity,
+          fpp);
+      this.capacity = capacity;
+      this.fpp = fpp;
+      // The optimal number of bits the filter is sized with, rounded up to whole words.
+      double optimalBits = -capacity * Math.log(fpp) / (Math.log(2) * Math.log(2));
+      this.bits = ((long) optimalBits + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package in.amigoscorp.cards.shard;
+
+/**
+ * The jump consistent hash of Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash
+ * Algorithm". Going from {@code n} to {@code n + 1} buckets only moves {@code 1 / (n + 1)} of the
+ * keys, all of them to the new bucket, and the buckets need no state beyond their number.
+ */
+final class JumpConsistentHash {
+
+  private JumpConsistentHash() {
+  }
+
+  /**
+   * @param key     the key, whose bits are mixed first so that consecutive keys spread evenly
+   * @param buckets the number of buckets
+   * @return the bucket of the key, within {@code [0, buckets)}
+   */
+  static int bucket(long key, int buckets) {
+    if (buckets < 1) {
+      throw new IllegalArgumentException("Unexpected number of buckets: " + buckets);
+    }
+    long state = mix(key);
+    long bucket = -1;
+    long next = 0;
+    while (next < buckets) {
+      bucket = next;
+      state = state * 2862933555777941757L + 1;
+      next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((state >>> 33) + 1)));
+    }
+    return (int) bucket;
+  }
+
+  /**
+   * The finalizer of MurmurHash3.
+   */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xFF51AFD7ED558CCDL;
+    key ^= key >>> 33;
+    key *= 0xC4CEB9FE1A85EC53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
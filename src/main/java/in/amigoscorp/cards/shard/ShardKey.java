@@ -0,0 +1,19 @@
+package in.amigoscorp.cards.shard;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter of a repository method holding the user, or the collection of users, the
+ * call is routed by. A call for a single user runs on the shard of the user, and a call for many
+ * users runs once on the shard of every group of them, its results being concatenated.
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+}
@@ -0,0 +1,110 @@
+package in.amigoscorp.cards.shard;
+
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.repository.CardRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves the cards of the users that belong to another shard than the one holding them. Once a
+ * shard is appended to {@code cards.sharding.shards}, about {@code 1 / n} of the users of the
+ * {@code n} shards belong to the new one, and only to it.
+ *
+ * <p>The users are moved chunk by chunk: their cards are copied to their shard and only then
+ * removed from the current one, so a rebalance that stops halfway is resumed by running it again.
+ * It runs before the cache is warmed up and the application accepts traffic.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "cards.sharding", name = "enabled", havingValue = "true")
+public class ShardRebalancer implements ApplicationRunner {
+
+  private final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+  private final CardRepository cardRepository;
+  private final CardsCache cardsCache;
+  private final ShardRouter shardRouter;
+  private final TransactionTemplate transactionTemplate;
+  private final ShardingProperties properties;
+
+  public ShardRebalancer(CardRepository cardRepository, CardsCache cardsCache,
+      ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+      ShardingProperties properties) {
+    this.cardRepository = cardRepository;
+    this.cardsCache = cardsCache;
+    this.shardRouter = shardRouter;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.properties = properties;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (properties.isRebalanceOnStartup()) {
+      rebalance();
+    }
+  }
+
+  /**
+   * @return the number of users moved
+   */
+  public int rebalance() {
+    int moved = 0;
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      moved += rebalance(shard);
+    }
+    log.info("Moved the cards of {} users to their shards.", moved);
+    return moved;
+  }
+
+  private int rebalance(int shard) {
+    int moved = 0;
+    long after = Long.MIN_VALUE;
+    List<Long> userIds;
+    do {
+      long from = after;
+      userIds = shardRouter.callOnShard(shard, () -> cardRepository.findUserIdsAfter(from,
+          PageRequest.of(0, properties.getRebalanceChunkSize())));
+      if (userIds.isEmpty()) {
+        break;
+      }
+      after = userIds.get(userIds.size() - 1);
+      List<Long> misplaced = new ArrayList<>();
+      for (Long userId : userIds) {
+        if (shardRouter.shardOf(userId) != shard) {
+          misplaced.add(userId);
+        }
+      }
+      if (!misplaced.isEmpty()) {
+        move(shard, misplaced);
+        moved += misplaced.size();
+      }
+    } while (userIds.size() == properties.getRebalanceChunkSize());
+    return moved;
+  }
+
+  private void move(int shard, List<Long> userIds) {
+    List<Card> cards = shardRouter.callOnShard(shard,
+        () -> cardRepository.findAllOnShardByUserIdIn(userIds));
+    Map<Integer, List<Card>> targets = shardRouter.partition(cards, Card::getUserId);
+    for (Map.Entry<Integer, List<Card>> target : targets.entrySet()) {
+      shardRouter.onShard(target.getKey(), () -> transactionTemplate.execute(
+          status -> cardRepository.saveAll(target.getValue())));
+    }
+    int removed = shardRouter.callOnShard(shard,
+        () -> cardRepository.deleteAllOnShardByUserIdIn(userIds));
+    userIds.forEach(cardsCache::invalidate);
+    log.info("Moved {} cards of {} users off the shard {}.", removed, userIds.size(), shard);
+  }
+}
@@ -0,0 +1,112 @@
+package in.amigoscorp.cards.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells the shard of every user and which shard the current thread works on. The repository calls
+ * and the transactions run on the shard set here, see {@link ShardingConfiguration}. When sharding
+ * is disabled, there is a single shard and setting it changes nothing.
+ */
+@Component
+public class ShardRouter {
+
+  private final int shardCount;
+  private final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+  public ShardRouter(ShardingProperties properties) {
+    this.shardCount = properties.isEnabled() ? properties.getShards().size() : 1;
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("cards.sharding.shards must not be empty.");
+    }
+  }
+
+  public int shardCount() {
+    return shardCount;
+  }
+
+  /**
+   * @param userId an unique user identifier
+   * @return the shard holding the cards of the user
+   */
+  public int shardOf(Long userId) {
+    return userId == null || shardCount == 1 ? 0 : JumpConsistentHash.bucket(userId, shardCount);
+  }
+
+  /**
+   * Groups the items by the shard of their user.
+   *
+   * @param items  the items to group
+   * @param userId the user of an item
+   * @return the items of every shard holding any, in the order of the shards
+   */
+  public <T> Map<Integer, List<T>> partition(Collection<T> items, Function<T, Long> userId) {
+    Map<Integer, List<T>> partitions = new TreeMap<>();
+    for (T item : items) {
+      partitions.computeIfAbsent(shardOf(userId.apply(item)), shard -> new ArrayList<>())
+          .add(item);
+    }
+    return partitions;
+  }
+
+  /**
+   * Runs the work on the shard, restoring the shard of the current thread afterwards.
+   *
+   * @param shard the shard
+   * @param work  the work, whose repository calls and transactions run on the shard
+   * @return the result of the work
+   */
+  public <T> T callOnShard(int shard, Supplier<T> work) {
+    Integer previous = enter(shard);
+    try {
+      return work.get();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * @see #callOnShard(int, Supplier)
+   */
+  public void onShard(int shard, Runnable work) {
+    Integer previous = enter(shard);
+    try {
+      work.run();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * @return the shard the current thread works on, {@code null} when none
+   */
+  Integer currentShard() {
+    return currentShard.get();
+  }
+
+  /**
+   * @return the shard the current thread worked on before
+   */
+  Integer enter(int shard) {
+    if (shard < 0 || shard >= shardCount) {
+      throw new IllegalArgumentException("Unknown shard " + shard);
+    }
+    Integer previous = currentShard.get();
+    currentShard.set(shard);
+    return previous;
+  }
+
+  void restore(Integer previous) {
+    if (previous == null) {
+      currentShard.remove();
+    } else {
+      currentShard.set(previous);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package in.amigoscorp.cards.shard;
+
+import in.amigoscorp.cards.entity.Card;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes the repository calls to the shards. A call runs on the shard of its {@link ShardKey} or,
+ * for the writes, of the user of its {@link Card}. Any other call must run within
+ * {@link ShardRouter#callOnShard}, as must a call for a user of another shard than the one of the
+ * current transaction.
+ *
+ * <p>It wraps the repositories ahead of their own transactions, so that they start on the shard.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+class ShardRoutingAspect {
+
+  private final ShardRouter shardRouter;
+
+  ShardRoutingAspect(ShardRouter shardRouter) {
+    this.shardRouter = shardRouter;
+  }
+
+  @Around("target(in.amigoscorp.cards.repository.CardRepository)"
+      + " || target(in.amigoscorp.cards.repository.CardOutboxRepository)"
+      + " || target(in.amigoscorp.cards.repository.SweepWatermarkRepository)")
+  public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+    Object[] args = joinPoint.getArgs();
+    int index = shardKeyIndex(joinPoint);
+    if (index >= 0 && args[index] instanceof Collection) {
+      return scatter(joinPoint, index, (Collection<?>) args[index]);
+    }
+    if (index >= 0) {
+      return proceedOnShard(joinPoint, args, shardRouter.shardOf((Long) args[index]));
+    }
+    if (args.length == 1 && args[0] instanceof Card) {
+      return proceedOnShard(joinPoint, args, shardRouter.shardOf(((Card) args[0]).getUserId()));
+    }
+    if (shardRouter.currentShard() == null) {
+      throw new IllegalStateException("The call to " + joinPoint.getSignature().toShortString()
+          + " is not routed to any shard.");
+    }
+    return joinPoint.proceed();
+  }
+
+  /**
+   * Runs the call once per shard of the users of the key, with the users of the shard only.
+   */
+  private Object scatter(ProceedingJoinPoint joinPoint, int index, Collection<?> userIds)
+      throws Throwable {
+    Map<Integer, List<Long>> partitions = shardRouter.partition(toUserIds(userIds),
+        userId -> userId);
+    if (partitions.size() == 1) {
+      return proceedOnShard(joinPoint, joinPoint.getArgs(), partitions.keySet().iterator().next());
+    }
+    List<Object> results = new ArrayList<>();
+    for (Map.Entry<Integer, List<Long>> partition : partitions.entrySet()) {
+      Object[] args = joinPoint.getArgs().clone();
+      args[index] = partition.getValue();
+      results.addAll((Collection<?>) proceedOnShard(joinPoint, args, partition.getKey()));
+    }
+    return results;
+  }
+
+  private Object proceedOnShard(ProceedingJoinPoint joinPoint, Object[] args, int shard)
+      throws Throwable {
+    Integer current = shardRouter.currentShard();
+    if (current != null && current != shard
+        && TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("The call to " + joinPoint.getSignature().toShortString()
+          + " for the shard " + shard + " is within a transaction of the shard " + current);
+    }
+    Integer previous = shardRouter.enter(shard);
+    try {
+      return joinPoint.proceed(args);
+    } finally {
+      shardRouter.restore(previous);
+    }
+  }
+
+  private static int shardKeyIndex(ProceedingJoinPoint joinPoint) {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    Annotation[][] annotations = method.getParameterAnnotations();
+    for (int i = 0; i < annotations.length; i++) {
+      for (Annotation annotation : annotations[i]) {
+        if (annotation instanceof ShardKey) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static List<Long> toUserIds(Collection<?> userIds) {
+    List<Long> list = new ArrayList<>(userIds.size());
+    for (Object userId : userIds) {
+      list.add((Long) userId);
+    }
+    return list;
+  }
+}
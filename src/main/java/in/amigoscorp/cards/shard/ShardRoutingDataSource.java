@@ -0,0 +1,34 @@
+package in.amigoscorp.cards.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out the connections of the shard the current thread works on, or of the first shard when
+ * it works on none, which is only expected while the application starts.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+  private final ShardRouter shardRouter;
+
+  ShardRoutingDataSource(ShardRouter shardRouter) {
+    this.shardRouter = shardRouter;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return shardRouter.currentShard();
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    for (DataSource shard : getResolvedDataSources().values()) {
+      if (shard instanceof Closeable) {
+        ((Closeable) shard).close();
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package in.amigoscorp.cards.shard;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the schema of every shard but the first one up to date with the entities, when Hibernate
+ * is asked to generate the schema. Hibernate only generates the one of the first shard, which it
+ * reaches through the routing data source while starting.
+ */
+class ShardSchemaIntegrator implements Integrator {
+
+  private final Logger log = LoggerFactory.getLogger(ShardSchemaIntegrator.class);
+  private final ShardRouter shardRouter;
+
+  ShardSchemaIntegrator(ShardRouter shardRouter) {
+    this.shardRouter = shardRouter;
+  }
+
+  @Override
+  public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+      SessionFactoryServiceRegistry serviceRegistry) {
+    Object action = serviceRegistry.getService(ConfigurationService.class).getSettings()
+        .get(AvailableSettings.HBM2DDL_AUTO);
+    if (action == null || !Arrays.asList("create", "create-drop", "update")
+        .contains(action.toString().trim())) {
+      return;
+    }
+    for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+      log.info("Updating the schema of the shard {}", shard);
+      shardRouter.onShard(shard, () -> new SchemaUpdate()
+          .execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry));
+    }
+  }
+
+  @Override
+  public void disintegrate(SessionFactoryImplementor sessionFactory,
+      SessionFactoryServiceRegistry serviceRegistry) {
+  }
+}
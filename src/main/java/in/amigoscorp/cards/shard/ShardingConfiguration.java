@@ -0,0 +1,61 @@
+package in.amigoscorp.cards.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import in.amigoscorp.cards.shard.ShardingProperties.Shard;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Partitions the cards across the data stores of {@code cards.sharding.shards}, by a consistent
+ * hash of the user identifier. The data source routes every connection to the shard set on the
+ * {@link ShardRouter}, which the repository calls set from their {@link ShardKey} and the writers
+ * and the background jobs set around their transactions.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "cards.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ShardingProperties properties, ShardRouter shardRouter) {
+    List<Shard> shards = properties.getShards();
+    Map<Object, Object> dataSources = new HashMap<>();
+    for (int i = 0; i < shards.size(); i++) {
+      Shard shard = shards.get(i);
+      HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+          .url(shard.getUrl()).username(shard.getUsername()).password(shard.getPassword())
+          .build();
+      dataSource.setPoolName("cards-shard-" + i);
+      dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+      dataSources.put(i, dataSource);
+    }
+    ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shardRouter);
+    dataSource.setTargetDataSources(dataSources);
+    dataSource.setDefaultTargetDataSource(dataSources.get(0));
+    return dataSource;
+  }
+
+  @Bean
+  ShardRoutingAspect shardRoutingAspect(ShardRouter shardRouter) {
+    return new ShardRoutingAspect(shardRouter);
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardRouter shardRouter) {
+    IntegratorProvider integrators = () -> Collections.singletonList(
+        new ShardSchemaIntegrator(shardRouter));
+    return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+        integrators);
+  }
+}
@@ -0,0 +1,43 @@
+package in.amigoscorp.cards.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The data stores the cards are partitioned across, by a consistent hash of the user identifier.
+ * The order of the shards is significant: a shard is only ever added at the end.
+ */
+@Data
+@ConfigurationProperties(prefix = "cards.sharding")
+public class ShardingProperties {
+
+  /**
+   * Whether the cards are partitioned across the {@link #shards}. Otherwise they all live in the
+   * data store of {@code spring.datasource}.
+   */
+  private boolean enabled = false;
+  private List<Shard> shards = new ArrayList<>();
+  /**
+   * Whether the cards of the users that belong to another shard, typically after a shard was
+   * added, are moved there before the application accepts traffic.
+   */
+  private boolean rebalanceOnStartup = false;
+  /**
+   * The number of users moved per transaction while rebalancing.
+   */
+  private int rebalanceChunkSize = 500;
+
+  @Data
+  public static class Shard {
+
+    private String url;
+    private String username;
+    private String password;
+    /**
+     * The maximum number of connections to the shard.
+     */
+    private int maximumPoolSize = 10;
+  }
+}
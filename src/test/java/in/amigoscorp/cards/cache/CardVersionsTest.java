@@ -0,0 +1,35 @@
+package in.amigoscorp.cards.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CardVersionsTest {
+
+  @Test
+  void testBumpChangesTheETag() {
+    CardVersions versions = new CardVersions(new CardsCacheProperties());
+    String initial = versions.eTag(1L);
+    versions.bump(1L);
+    String bumped = versions.eTag(1L);
+    Assertions.assertNotEquals(initial, bumped);
+    Assertions.assertEquals(bumped, versions.eTag(1L));
+    Assertions.assertEquals(initial, versions.eTag(2L));
+  }
+
+  @Test
+  void testDroppedUsersNeverGoBack() {
+    CardsCacheProperties properties = new CardsCacheProperties();
+    properties.setMaximumTrackedVersions(2);
+    CardVersions versions = new CardVersions(properties);
+    Set<Long> seen = new HashSet<>();
+    seen.add(versions.get(1L));
+    for (long userId = 1; userId <= 10; userId++) {
+      versions.bump(1L);
+      versions.bump(userId + 1);
+      // A changed user is never read again at any version handed out before the change.
+      Assertions.assertTrue(seen.add(versions.get(1L)));
+    }
+  }
+}
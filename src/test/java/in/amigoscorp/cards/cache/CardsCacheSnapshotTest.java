@@ -0,0 +1,51 @@
+package in.amigoscorp.cards.cache;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CardsCacheSnapshotTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testWriteAndRead() throws IOException {
+    Path path = directory.resolve("cards-cache.snapshot");
+    Map<Long, UserCards> entries = new LinkedHashMap<>();
+    entries.put(1L, UserCards.of(Collections.singletonList(Card.builder().userId(1L)
+        .cardNumber("1").cardIssuer(CardIssuer.MASTERCARD).expired(false).build())));
+    entries.put(2L, UserCards.of(Collections.emptyList()));
+    CardsCacheSnapshot.write(path, entries, 1_000L);
+
+    Map<Long, UserCards> restored = CardsCacheSnapshot.read(path, 1_000L);
+    Assertions.assertEquals(entries.keySet(), restored.keySet());
+    Assertions.assertEquals(entries.get(1L).getCards(), restored.get(1L).getCards());
+    Assertions.assertTrue(restored.get(2L).getCards().isEmpty());
+    Assertions.assertNull(CardsCacheSnapshot.read(path, 1_001L));
+  }
+
+  @Test
+  void testCorruptSnapshot() throws IOException {
+    Path path = directory.resolve("cards-cache.snapshot");
+    CardsCacheSnapshot.write(path, Collections.singletonMap(1L,
+        UserCards.of(Collections.emptyList())), 1_000L);
+    byte[] bytes = Files.readAllBytes(path);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(path, bytes);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CardsCacheSnapshot.read(path, 0L));
+
+    Files.write(path, new byte[]{1, 2, 3});
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CardsCacheSnapshot.read(path, 0L));
+  }
+}
@@ -0,0 +1,230 @@
+package in.amigoscorp.cards.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.journal.CacheOutcome;
+import in.amigoscorp.cards.journal.RequestEvent;
+import in.amigoscorp.cards.journal.RequestJournal;
+import in.amigoscorp.cards.journal.RequestJournalProperties;
+import in.amigoscorp.cards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class CardsCacheTest {
+
+  private final CacheLoader<Long, UserCards> loader = new CacheLoader<Long, UserCards>() {
+    @Override
+    public UserCards load(Long userId) {
+      List<Card> cards = new ArrayList<>();
+      for (int i = 0; i < userId; i++) {
+        cards.add(Card.builder().userId(userId).cardNumber(userId + "-" + i)
+            .cardIssuer(CardIssuer.MASTERCARD).expired(false).build());
+      }
+      return UserCards.of(cards);
+    }
+  };
+
+  @Test
+  void testMaximumSize() {
+    CardsCacheProperties properties = new CardsCacheProperties();
+    properties.setMaximumSize(2);
+    LoadingCache<Long, UserCards> cache = CardsCache.build(properties, loader);
+    cache.getUnchecked(1L);
+    cache.getUnchecked(2L);
+    cache.getUnchecked(3L);
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertEquals(1, cache.stats().evictionCount());
+  }
+
+  @Test
+  void testMaximumWeight() {
+    CardsCacheProperties properties = new CardsCacheProperties();
+    properties.setMaximumWeight(10L);
+    LoadingCache<Long, UserCards> cache = CardsCache.build(properties, loader);
+    cache.getUnchecked(4L);
+    cache.getUnchecked(5L);
+    Assertions.assertEquals(2, cache.size());
+    cache.getUnchecked(6L);
+    Assertions.assertTrue(cache.stats().evictionCount() >= 1);
+    Assertions.assertEquals(3, cache.stats().missCount());
+  }
+
+  @Test
+  void testPatchedCardsAreVersioned() {
+    CardsCacheProperties properties = new CardsCacheProperties();
+    LoadingCache<Long, UserCards> cache = CardsCache.build(properties, loader);
+    UserCards loaded = cache.getUnchecked(2L);
+    Card card = Card.builder().userId(2L).cardNumber("2-1").cardIssuer(CardIssuer.VISA)
+        .expired(true).build();
+    cache.asMap().computeIfPresent(2L, (userId, cards) -> cards.withCard(card));
+    UserCards replaced = cache.getUnchecked(2L);
+    Assertions.assertEquals(1, replaced.getVersion());
+    Assertions.assertEquals(2, replaced.size());
+    Assertions.assertSame(card, replaced.getCards().get(1));
+    cache.asMap().computeIfPresent(2L, (userId, cards) -> cards.withoutCard("2-0"));
+    UserCards removed = cache.getUnchecked(2L);
+    Assertions.assertEquals(2, removed.getVersion());
+    Assertions.assertEquals(1, removed.size());
+    Assertions.assertEquals(2, loaded.size());
+    Assertions.assertEquals(1, cache.stats().missCount());
+  }
+
+  @Test
+  void testGetAllLoadsInChunks() throws ExecutionException {
+    CardRepository cardRepository = Mockito.mock(CardRepository.class);
+    Card card = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    // Only the user 1 has a card, which is only returned to the chunk that asks for it.
+    Mockito.doAnswer(invocation -> {
+      Collection<Long> userIds = invocation.getArgument(0);
+      return userIds.contains(1L) ? Collections.singletonList(card) : Collections.emptyList();
+    }).when(cardRepository).findAllByUserIdIn(ArgumentMatchers.anyCollection());
+    CardsCacheProperties properties = new CardsCacheProperties();
+    properties.setLoadAllChunkSize(2);
+    CardsCache cache = new CardsCache(cardRepository, new CardVersions(properties), properties,
+        new RequestJournal(new RequestJournalProperties(), new SimpleMeterRegistry()),
+        new SimpleMeterRegistry());
+
+    Map<Long, List<Card>> cards = cache.getAll(Arrays.asList(3L, 1L, 2L, 4L, 5L));
+    Assertions.assertEquals(Arrays.asList(3L, 1L, 2L, 4L, 5L), new ArrayList<>(cards.keySet()));
+    Assertions.assertEquals(1, cards.get(1L).size());
+    Assertions.assertTrue(cards.get(2L).isEmpty());
+    Mockito.verify(cardRepository, Mockito.times(3))
+        .findAllByUserIdIn(ArgumentMatchers.anyCollection());
+
+    cache.getAll(Arrays.asList(1L, 2L, 6L));
+    Mockito.verify(cardRepository, Mockito.times(4))
+        .findAllByUserIdIn(ArgumentMatchers.anyCollection());
+    Mockito.verify(cardRepository, Mockito.never()).findAllByUserId(ArgumentMatchers.anyLong());
+  }
+
+  @Test
+  void testGetAllDiscardsTheUsersChangedWhileLoading() throws ExecutionException {
+    CardRepository cardRepository = Mockito.mock(CardRepository.class);
+    CardsCacheProperties properties = new CardsCacheProperties();
+    CardVersions cardVersions = new CardVersions(properties);
+    CardsCache cache = new CardsCache(cardRepository, cardVersions, properties,
+        new RequestJournal(new RequestJournalProperties(), new SimpleMeterRegistry()),
+        new SimpleMeterRegistry());
+    Card card = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    // The card is added once the bulk load has read the user without it.
+    Mockito.doAnswer(invocation -> {
+      cache.cardAdded(card);
+      return Collections.emptyList();
+    }).when(cardRepository).findAllByUserIdIn(ArgumentMatchers.anyCollection());
+    Mockito.doReturn(Collections.singletonList(card)).when(cardRepository).findAllByUserId(1L);
+
+    Assertions.assertTrue(cache.getAll(Arrays.asList(1L, 2L)).get(1L).isEmpty());
+    Assertions.assertEquals(1, cache.size());
+    Assertions.assertEquals(1, cache.get(1L).size());
+    Mockito.verify(cardRepository).findAllByUserId(1L);
+  }
+
+  @Test
+  void testEvictedUsersAreReadOffHeap() throws ExecutionException {
+    CardRepository cardRepository = Mockito.mock(CardRepository.class);
+    Card card = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    Mockito.doReturn(Collections.singletonList(card)).when(cardRepository).findAllByUserId(1L);
+    CardsCacheProperties properties = new CardsCacheProperties();
+    properties.setMaximumSize(1);
+    CardsCache cache = new CardsCache(cardRepository, new CardVersions(properties), properties,
+        new RequestJournal(new RequestJournalProperties(), new SimpleMeterRegistry()),
+        new SimpleMeterRegistry());
+
+    cache.get(1L);
+    cache.get(2L);
+    Assertions.assertEquals(1, cache.size());
+    Assertions.assertEquals(card, cache.get(1L).get(0));
+    Mockito.verify(cardRepository, Mockito.times(1)).findAllByUserId(1L);
+
+    // The user is no longer on the heap, the write discards the stale cards off the heap too.
+    cache.get(2L);
+    cache.cardRemoved(card);
+    Assertions.assertEquals(1, cache.get(1L).size());
+    Mockito.verify(cardRepository, Mockito.times(2)).findAllByUserId(1L);
+  }
+
+  @Test
+  void testEntriesAreTheUsersReadMostRecently() throws ExecutionException {
+    CardRepository cardRepository = Mockito.mock(CardRepository.class);
+    Card card = Card.builder().userId(2L).cardNumber("2").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    Mockito.doReturn(Collections.singletonList(card)).when(cardRepository).findAllByUserId(2L);
+    CardsCacheProperties properties = new CardsCacheProperties();
+    CardsCache cache = new CardsCache(cardRepository, new CardVersions(properties), properties,
+        new RequestJournal(new RequestJournalProperties(), new SimpleMeterRegistry()),
+        new SimpleMeterRegistry());
+    for (long userId = 1; userId <= 3; userId++) {
+      cache.get(userId);
+    }
+    // A later read of the user, which a change of its cards carries over.
+    cache.getUserCards(2L).read(System.currentTimeMillis() + 60_000);
+    cache.cardRemoved(card);
+
+    Assertions.assertEquals(Collections.singleton(2L), cache.entries(1).keySet());
+    Assertions.assertEquals(3, cache.entries(3).size());
+  }
+
+  @Test
+  void testHitIsOnlyRecordedOnTheHeap(@TempDir Path directory) throws Exception {
+    CardRepository cardRepository = Mockito.mock(CardRepository.class);
+    CardsCacheProperties properties = new CardsCacheProperties();
+    RequestJournalProperties journalProperties = new RequestJournalProperties();
+    journalProperties.setPath(directory.resolve("journal.jsonl"));
+    RequestJournal journal = new RequestJournal(journalProperties, new SimpleMeterRegistry());
+    CardsCache cache = new CardsCache(cardRepository, new CardVersions(properties), properties,
+        journal, new SimpleMeterRegistry());
+    journal.start();
+    try {
+      for (int i = 0; i < 2; i++) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        journal.begin(request, "getAllCardsByUserId");
+        cache.get(1L);
+        journal.end(request, 200);
+      }
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+      journal.shutdown();
+    }
+
+    List<RequestEvent> events = journal.recent(2);
+    Assertions.assertEquals(CacheOutcome.HIT, events.get(0).getCache());
+    Assertions.assertEquals(CacheOutcome.MISS, events.get(1).getCache());
+  }
+
+  @Test
+  void testJsonIsEncodedOncePerVersion() throws Exception {
+    ObjectWriter writer = new ObjectMapper().writerFor(new TypeReference<List<Card>>() {
+    });
+    UserCards loaded = loader.load(1L);
+    byte[] json = loaded.toJson(writer);
+    Assertions.assertSame(json, loaded.toJson(writer));
+    Assertions.assertTrue(new String(json, StandardCharsets.UTF_8).contains("\"1-0\""));
+    UserCards patched = loaded.withoutCard("1-0");
+    Assertions.assertEquals("[]", new String(patched.toJson(writer), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,60 @@
+package in.amigoscorp.cards.cache;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCardStoreTest {
+
+  private final Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+      .cardNumber("1").hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12).expiryYear(99)
+      .cvv(123).cardIssuer(CardIssuer.MASTERCARD).expired(true).build();
+
+  @Test
+  void testRoundTrip() {
+    OffHeapCardStore store = new OffHeapCardStore(4096);
+    Card partial = Card.builder().userId(1L).cardNumber("2").expired(false).build();
+    store.put(1L, UserCards.of(Arrays.asList(card, partial)).withoutCard("3"));
+    UserCards stored = store.get(1L);
+    Assertions.assertEquals(1, stored.getVersion());
+    Assertions.assertEquals(2, stored.size());
+    Card expected = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("1").hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12).expiryYear(99)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(true).build();
+    Assertions.assertEquals(expected, stored.getCards().get(0));
+    Assertions.assertEquals(partial, stored.getCards().get(1));
+    Assertions.assertNull(store.get(2L));
+    Assertions.assertEquals(1, store.hitCount());
+    Assertions.assertEquals(1, store.missCount());
+  }
+
+  @Test
+  void testOverwrittenEntriesAreEvicted() {
+    OffHeapCardStore store = new OffHeapCardStore(2048);
+    for (long userId = 0; userId < 100; userId++) {
+      store.put(userId, UserCards.of(Collections.singletonList(card)));
+    }
+    Assertions.assertNull(store.get(0L));
+    Assertions.assertNotNull(store.get(99L));
+    Assertions.assertTrue(store.evictionCount() > 0);
+    Assertions.assertEquals(100, store.size() + store.evictionCount());
+    Assertions.assertTrue(store.usedBytes() <= store.capacity());
+  }
+
+  @Test
+  void testInvalidate() {
+    OffHeapCardStore store = new OffHeapCardStore(4096);
+    store.put(1L, UserCards.of(Collections.singletonList(card)));
+    store.invalidate(1L);
+    Assertions.assertNull(store.get(1L));
+  }
+
+  @Test
+  void testMalformedBytes() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CardListSerializer.deserialize(new byte[]{1, 0, 0}));
+  }
+}
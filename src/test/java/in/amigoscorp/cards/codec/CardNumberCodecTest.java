@@ -0,0 +1,53 @@
+package in.amigoscorp.cards.codec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CardNumberCodecTest {
+
+  private final CardNumberCodec codec = codec("test-key");
+
+  @Test
+  void testEncode() {
+    EncodedCardNumber encoded = codec.encode("5555555555554444".toCharArray());
+    Assertions.assertTrue(encoded.isValid());
+    Assertions.assertEquals("XXXXXXXXXXXX4444", encoded.getMaskedCardNumber());
+    Assertions.assertEquals(64, encoded.getHash().length());
+    Assertions.assertEquals(encoded.getHash(),
+        codec.encode("5555555555554444".toCharArray()).getHash());
+    Assertions.assertNotEquals(encoded.getHash(),
+        codec.encode("4111111111111111".toCharArray()).getHash());
+    Assertions.assertNotEquals(encoded.getHash(),
+        codec("another-key").encode("5555555555554444".toCharArray()).getHash());
+  }
+
+  @Test
+  void testLuhn() {
+    Assertions.assertTrue(codec.encode("5555555555554444".toCharArray()).isValid());
+    Assertions.assertTrue(codec.encode("4111111111111111".toCharArray()).isValid());
+    Assertions.assertFalse(codec.encode("4111111111111112".toCharArray()).isValid());
+    Assertions.assertFalse(codec.encode("41111111111a1111".toCharArray()).isValid());
+    Assertions.assertFalse(codec.encode("4111".toCharArray()).isValid());
+  }
+
+  @Test
+  void testCardNumberIsZeroed() {
+    char[] valid = "5555555555554444".toCharArray();
+    codec.encode(valid);
+    Assertions.assertArrayEquals(new char[16], valid);
+    char[] invalid = "4111111111111112".toCharArray();
+    codec.encode(invalid);
+    Assertions.assertArrayEquals(new char[16], invalid);
+  }
+
+  @Test
+  void testMissingKey() {
+    Assertions.assertThrows(IllegalStateException.class, () -> codec(null));
+  }
+
+  private static CardNumberCodec codec(String hmacKey) {
+    CardNumberCodecProperties properties = new CardNumberCodecProperties();
+    properties.setHmacKey(hmacKey);
+    return new CardNumberCodec(properties);
+  }
+}
@@ -0,0 +1,83 @@
+package in.amigoscorp.cards.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+  @Test
+  void testCapacityIsRoundedUp() {
+    Assertions.assertEquals(2, new RingBuffer<Integer>(1).capacity());
+    Assertions.assertEquals(2, new RingBuffer<Integer>(2).capacity());
+    Assertions.assertEquals(8, new RingBuffer<Integer>(8).capacity());
+    Assertions.assertEquals(16, new RingBuffer<Integer>(9).capacity());
+  }
+
+  @Test
+  void testFullBufferRejectsUntilDrained() {
+    RingBuffer<Integer> buffer = new RingBuffer<>(4);
+    for (int i = 0; i < 4; i++) {
+      Assertions.assertTrue(buffer.offer(i));
+    }
+    Assertions.assertFalse(buffer.offer(4));
+    Assertions.assertEquals(4, buffer.size());
+
+    List<Integer> drained = new ArrayList<>();
+    Assertions.assertEquals(3, buffer.drainTo(drained, 3));
+    Assertions.assertTrue(buffer.offer(4));
+    Assertions.assertEquals(2, buffer.drainTo(drained, 10));
+    Assertions.assertEquals(0, buffer.drainTo(drained, 10));
+    Assertions.assertEquals(0, buffer.size());
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertEquals(i, drained.get(i));
+    }
+  }
+
+  @Test
+  void testEveryProducerKeepsItsOrder() throws InterruptedException {
+    int producers = 4;
+    int perProducer = 100_000;
+    RingBuffer<long[]> buffer = new RingBuffer<>(1024);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int producer = 0; producer < producers; producer++) {
+      long id = producer;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (long sequence = 0; sequence < perProducer; sequence++) {
+          long[] element = {id, sequence};
+          while (!buffer.offer(element)) {
+            Thread.yield();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+
+    long[] next = new long[producers];
+    List<long[]> drained = new ArrayList<>();
+    int total = 0;
+    while (total < producers * perProducer) {
+      drained.clear();
+      total += buffer.drainTo(drained, 256);
+      for (long[] element : drained) {
+        Assertions.assertEquals(next[(int) element[0]]++, element[1]);
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (long count : next) {
+      Assertions.assertEquals(perProducer, count);
+    }
+  }
+}
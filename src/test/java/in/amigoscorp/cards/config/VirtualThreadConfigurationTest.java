@@ -0,0 +1,57 @@
+package in.amigoscorp.cards.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+class VirtualThreadConfigurationTest {
+
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+      .withUserConfiguration(AsyncConfiguration.class, VirtualThreadConfiguration.class);
+
+  @Test
+  void testPlatformThreadsByDefault() {
+    contextRunner.withPropertyValues("spring.task.execution.pool.queue-capacity=10")
+        .run(context -> {
+          Assertions.assertFalse(context.containsBean("webRequestExecutor"));
+          // The executor of the cards replaces the default one of Spring Boot.
+          Assertions.assertFalse(context.containsBean("applicationTaskExecutor"));
+          ThreadPoolTaskExecutor executor = context.getBean("cardsTaskExecutor",
+              ThreadPoolTaskExecutor.class);
+          Assertions.assertEquals(10, executor.getThreadPoolExecutor().getQueue()
+              .remainingCapacity());
+          Assertions.assertTrue(executor.getThreadPoolExecutor().getRejectedExecutionHandler()
+              instanceof ThreadPoolExecutor.CallerRunsPolicy);
+        });
+  }
+
+  @Test
+  void testVirtualThreads() {
+    Assumptions.assumeTrue(VirtualThreads.isSupported());
+    contextRunner.withPropertyValues("cards.virtual-threads.enabled=true").run(context -> {
+      Assertions.assertTrue(context.containsBean("webRequestExecutor"));
+      Assertions.assertTrue(context.containsBean("virtualThreadProtocolHandlerCustomizer"));
+      Object executor = context.getBean("cardsTaskExecutor");
+      Assertions.assertFalse(executor instanceof ThreadPoolTaskExecutor);
+    });
+  }
+
+  @Test
+  void testVirtualThreadsFailBeforeJava21() {
+    Assumptions.assumeFalse(VirtualThreads.isSupported());
+    contextRunner.withPropertyValues("cards.virtual-threads.enabled=true").run(context -> {
+      Assertions.assertNotNull(context.getStartupFailure());
+      Throwable cause = context.getStartupFailure();
+      while (cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      Assertions.assertTrue(cause instanceof IllegalStateException);
+    });
+  }
+}
@@ -0,0 +1,44 @@
+package in.amigoscorp.cards.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class VirtualThreadsTest {
+
+  @Test
+  void testSupportFollowsTheJavaVersion() {
+    Assertions.assertEquals(javaVersion() >= 21, VirtualThreads.isSupported());
+  }
+
+  @Test
+  void testFallbackBeforeJava21() {
+    Assumptions.assumeFalse(VirtualThreads.isSupported());
+    IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+        () -> VirtualThreads.newVirtualThreadPerTaskExecutor("test-"));
+    Assertions.assertTrue(e.getCause() instanceof NoSuchMethodException);
+  }
+
+  @Test
+  void testVirtualThreadPerTask() throws Exception {
+    Assumptions.assumeTrue(VirtualThreads.isSupported());
+    ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor("test-");
+    try {
+      Callable<Thread> currentThread = Thread::currentThread;
+      Thread first = executor.submit(currentThread).get();
+      Thread second = executor.submit(currentThread).get();
+      Assertions.assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(first));
+      Assertions.assertNotSame(first, second);
+      Assertions.assertTrue(first.getName().startsWith("test-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static int javaVersion() {
+    String version = System.getProperty("java.specification.version");
+    return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+  }
+}
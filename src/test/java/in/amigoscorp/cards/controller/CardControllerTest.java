@@ -1,19 +1,35 @@
 package in.amigoscorp.cards.controller;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.amigoscorp.cards.entity.Card;
 import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.repository.CardView;
+import in.amigoscorp.cards.service.CardBatchResult;
+import in.amigoscorp.cards.service.CardBatchService;
+import in.amigoscorp.cards.service.CardPage;
+import in.amigoscorp.cards.service.CardRegistration;
+import in.amigoscorp.cards.service.CardRegistration.Status;
 import in.amigoscorp.cards.service.CardService;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.jupiter.api.DisplayName;
@@ -23,17 +39,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@ActiveProfiles("test")
+@SpringBootTest(properties = "cards.cache.snapshot.enabled=false")
 @AutoConfigureMockMvc
 class CardControllerTest {
 
   @MockBean
   private CardService cardService;
+  @MockBean
+  private CardBatchService cardBatchService;
   @Autowired
   private MockMvc mockMvc;
 
@@ -42,22 +64,83 @@ class CardControllerTest {
   void testGetCardsByUserIdFound() throws Exception {
     Card mockCard = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
         .expired(false).build();
-    doReturn(Collections.singletonList(mockCard)).when(cardService).getAllCardsByUserId(1L);
+    doReturn(new ObjectMapper().writeValueAsBytes(Collections.singletonList(mockCard)))
+        .when(cardService).getAllCardsJsonByUserId(1L);
+    doReturn("epoch-1").when(cardService).getCardsETag(1L);
     mockMvc.perform(get("/cards/{userId}", 1))
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"epoch-1\""))
         .andExpect(jsonPath("$[0].userId", is(1)))
         .andExpect(jsonPath("$[0].cardIssuer", is("MASTERCARD")));
   }
 
+  @Test
+  @DisplayName("GET /cards/1 Not Modified")
+  void testGetCardsByUserIdNotModified() throws Exception {
+    doReturn("epoch-1").when(cardService).getCardsETag(1L);
+    mockMvc.perform(get("/cards/{userId}", 1).header(HttpHeaders.IF_NONE_MATCH, "\"epoch-1\""))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"epoch-1\""));
+    verify(cardService, never()).getAllCardsJsonByUserId(1L);
+  }
+
   @Test
   @DisplayName("GET /cards/1 Not Found")
   void testGetCardsByUserIdNotFound() throws Exception {
-    doReturn(Collections.emptyList()).when(cardService).getAllCardsByUserId(1L);
-    mockMvc.perform(get("/cards/{userId}", 1))
+    doReturn(null).when(cardService).getAllCardsJsonByUserId(1L);
+    doReturn("epoch-2").when(cardService).getCardsETag(1L);
+    mockMvc.perform(get("/cards/{userId}", 1).header(HttpHeaders.IF_NONE_MATCH, "\"epoch-1\""))
         .andExpect(status().isNoContent());
   }
 
+  @Test
+  @DisplayName("GET /cards?userIds=1,2 Found")
+  void testGetCardsByUserIdsFound() throws Exception {
+    Card mockCard = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
+        .expired(false).build();
+    Map<Long, List<Card>> mockCards = new LinkedHashMap<>();
+    mockCards.put(1L, Collections.singletonList(mockCard));
+    mockCards.put(2L, Collections.emptyList());
+    doReturn(mockCards).when(cardService).getAllCardsByUserIds(Arrays.asList(1L, 2L));
+    mockMvc.perform(get("/cards").param("userIds", "1,2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.1[0].cardIssuer", is("MASTERCARD")))
+        .andExpect(jsonPath("$.2", hasSize(0)));
+  }
+
+  @Test
+  @DisplayName("POST /cards/lookup Bad Request")
+  void testLookupCardsByUserIdsTooMany() throws Exception {
+    doThrow(new IllegalArgumentException()).when(cardService).getAllCardsByUserIds(any());
+    mockMvc.perform(post("/cards/lookup").contentType(MediaType.APPLICATION_JSON).content("[1,2]"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @DisplayName("GET /cards/1?limit=1 Found")
+  void testGetCardsPageByUserIdFound() throws Exception {
+    Card mockCard = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
+        .expired(false).build();
+    CardView mockView = new SpelAwareProxyProjectionFactory()
+        .createProjection(CardView.class, mockCard);
+    doReturn(new CardPage(Collections.singletonList(mockView), "MQ")).when(cardService)
+        .getCardsPage(1L, null, 1);
+    mockMvc.perform(get("/cards/{userId}", 1).param("limit", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.cards[0].cardNumber", is("1")))
+        .andExpect(jsonPath("$.cards[0].cardIssuer", is("MASTERCARD")))
+        .andExpect(jsonPath("$.nextCursor", is("MQ")));
+  }
+
+  @Test
+  @DisplayName("GET /cards/1?limit=1&cursor=! Bad Request")
+  void testGetCardsPageByUserIdBadCursor() throws Exception {
+    doThrow(new IllegalArgumentException()).when(cardService).getCardsPage(1L, "!", 1);
+    mockMvc.perform(get("/cards/{userId}", 1).param("limit", "1").param("cursor", "!"))
+        .andExpect(status().isBadRequest());
+  }
+
   @Test
   @DisplayName("POST /card Added")
   void testSaveCardAdded() throws Exception {
@@ -68,9 +151,12 @@ class CardControllerTest {
         .cardNumber(DigestUtils.shaHex("1234567890123456"))
         .hashedCardNumber(hashCardNumber("1234567890123456")).expiryMonth(12).expiryYear(99)
         .cvv(123).cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
-    doReturn(true).when(cardService).addCard(card);
+    doReturn(new CardRegistration("1", 1L, mockCard.getHashedCardNumber(), Status.PENDING))
+        .when(cardService).submitCard(card);
     mockMvc.perform(post("/card").contentType(MediaType.APPLICATION_JSON).content(asJsonString(card)))
-        .andExpect(status().isAccepted());
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Location", "http://localhost/card/status/1"))
+        .andExpect(jsonPath("$.status", is("PENDING")));
   }
 
   @Test
@@ -83,11 +169,30 @@ class CardControllerTest {
         .cardNumber(DigestUtils.shaHex("1234567890123456"))
         .hashedCardNumber(hashCardNumber("1234567890123456")).expiryMonth(12).expiryYear(99)
         .cvv(123).cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
-    doReturn(false).when(cardService).addCard(card);
+    doReturn(new CardRegistration("1", 1L, null, Status.REJECTED)).when(cardService)
+        .submitCard(card);
     mockMvc.perform(post("/card").contentType(MediaType.APPLICATION_JSON).content(asJsonString(card)))
         .andExpect(status().isBadRequest());
   }
 
+  @Test
+  @DisplayName("GET /card/status/1 Found")
+  void testGetCardStatusFound() throws Exception {
+    doReturn(new CardRegistration("1", 1L, hashCardNumber("1234567890123456"), Status.ADDED))
+        .when(cardService).getRegistration("1");
+    mockMvc.perform(get("/card/status/{registrationId}", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.userId", is(1)))
+        .andExpect(jsonPath("$.status", is("ADDED")));
+  }
+
+  @Test
+  @DisplayName("GET /card/status/1 Not Found")
+  void testGetCardStatusNotFound() throws Exception {
+    mockMvc.perform(get("/card/status/{registrationId}", "1"))
+        .andExpect(status().isNotFound());
+  }
+
   @Test
   @DisplayName("POST /card Deleted")
   void testSaveCardDeleted() throws Exception {
@@ -112,6 +217,29 @@ class CardControllerTest {
         .andExpect(status().isBadRequest());
   }
 
+  @Test
+  @DisplayName("POST /cards/batch Reported")
+  void testSaveCardsReported() throws Exception {
+    Card card1 = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("1234567890123456").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+    Card card2 = Card.builder().userId(2L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("6543210987654321").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardIssuer(CardIssuer.VISA).expired(false).build();
+    doReturn(Arrays.asList(
+        new CardBatchResult(0, 1L, hashCardNumber("1234567890123456"),
+            CardBatchResult.Status.ADDED),
+        new CardBatchResult(1, 2L, hashCardNumber("6543210987654321"),
+            CardBatchResult.Status.INVALID)))
+        .when(cardBatchService).addCards(any());
+    mockMvc.perform(post("/cards/batch").contentType(MediaType.APPLICATION_JSON)
+            .content(asJsonString(Arrays.asList(card1, card2))))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status", is("ADDED")))
+        .andExpect(jsonPath("$[1].userId", is(2)))
+        .andExpect(jsonPath("$[1].status", is("INVALID")));
+  }
+
   private String hashCardNumber(String cardNumber) {
     String substring = StringUtils.substring(cardNumber, 0, cardNumber.length() - 4);
     String hash = StringUtils.repeat("X", substring.length());
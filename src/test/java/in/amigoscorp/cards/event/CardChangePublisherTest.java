@@ -0,0 +1,68 @@
+package in.amigoscorp.cards.event;
+
+import in.amigoscorp.cards.entity.CardChangeType;
+import in.amigoscorp.cards.entity.CardOutboxEvent;
+import in.amigoscorp.cards.repository.CardOutboxRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import in.amigoscorp.cards.shard.ShardingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+class CardChangePublisherTest {
+
+  @Test
+  void testTheChangesAfterAnOverflowWaitForTheOutbox() throws Exception {
+    CardOutboxRepository outboxRepository = Mockito.mock(CardOutboxRepository.class);
+    CardEventsProperties properties = new CardEventsProperties();
+    properties.setBufferSize(2);
+    properties.setPublishTimeout(Duration.ZERO);
+    InMemoryCardChangeSink sink = new InMemoryCardChangeSink(properties);
+    @SuppressWarnings("unchecked")
+    ObjectProvider<CardChangeSink> sinks = Mockito.mock(ObjectProvider.class);
+    Mockito.doAnswer(invocation -> Stream.of(sink)).when(sinks).orderedStream();
+    CardChangePublisher publisher = new CardChangePublisher(outboxRepository, sinks,
+        new ShardRouter(new ShardingProperties()), properties, new SimpleMeterRegistry());
+
+    // The third event overflows the buffer, the fourth one follows it to the outbox.
+    publisher.publish(Arrays.asList(event(1L), event(2L), event(3L)));
+    publisher.publish(Collections.singletonList(event(4L)));
+    Mockito.doReturn(Arrays.asList(event(3L), event(4L)), Collections.emptyList())
+        .when(outboxRepository).findByOccurredAtLessThanOrderById(
+            ArgumentMatchers.eq(Long.MAX_VALUE), ArgumentMatchers.any());
+    publisher.start();
+    try {
+      // The outbox is delivered and found empty, after which the buffer is used again.
+      Mockito.verify(outboxRepository, Mockito.timeout(5_000).times(2))
+          .findByOccurredAtLessThanOrderById(ArgumentMatchers.eq(Long.MAX_VALUE),
+              ArgumentMatchers.any());
+      publisher.publish(Collections.singletonList(event(5L)));
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (sink.events().size() < 5 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+    } finally {
+      publisher.shutdown();
+    }
+
+    Assertions.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids(sink.events()));
+  }
+
+  private static CardOutboxEvent event(Long id) {
+    return new CardOutboxEvent(id, CardChangeType.ADDED, 1L, "card-" + id,
+        System.currentTimeMillis());
+  }
+
+  private static List<Long> ids(List<CardChanged> events) {
+    return events.stream().map(CardChanged::getId).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,33 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.CardIssuer;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BinRangeIndexTest {
+
+  @Test
+  void testLookup() throws IOException {
+    BinRangeIndex index = BinRangeIndex.load(new StringReader(
+        "# comment\n51,55,MASTERCARD\n\n4,4,VISA\n2221,2720,MASTERCARD\n"));
+    Assertions.assertEquals(3, index.size());
+    Assertions.assertEquals(CardIssuer.MASTERCARD, index.lookup("5555555555554444"));
+    Assertions.assertEquals(CardIssuer.MASTERCARD, index.lookup("2221000000000009"));
+    Assertions.assertEquals(CardIssuer.MASTERCARD, index.lookup("2720999999999999"));
+    Assertions.assertEquals(CardIssuer.VISA, index.lookup("4111111111111111"));
+    Assertions.assertNull(index.lookup("2721000000000000"));
+    Assertions.assertNull(index.lookup("1234567890123456"));
+    Assertions.assertNull(index.lookup("56"));
+    Assertions.assertNull(index.lookup("5555-5555-5555-4444"));
+    Assertions.assertEquals(CardIssuer.VISA, index.lookup("4111111111111111".toCharArray()));
+    Assertions.assertNull(index.lookup("4111".toCharArray()));
+  }
+
+  @Test
+  void testOverlappingRanges() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> BinRangeIndex.load(new StringReader("4,4,VISA\n45,46,MASTERCARD\n")));
+  }
+}
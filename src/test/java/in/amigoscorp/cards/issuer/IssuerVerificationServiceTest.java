@@ -0,0 +1,146 @@
+package in.amigoscorp.cards.issuer;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IssuerVerificationServiceTest {
+
+  private final Card card = Card.builder().userId(1L).cardNumber("1")
+      .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+  private final List<CompletableFuture<Boolean>> calls = new ArrayList<>();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void testCircuitBreakerOpens() {
+    IssuerProperties properties = new IssuerProperties();
+    properties.setFailureThreshold(2);
+    IssuerVerificationService service = newService(properties, () -> {
+      CompletableFuture<Boolean> call = new CompletableFuture<>();
+      call.completeExceptionally(new IllegalStateException());
+      return call;
+    });
+    Assertions.assertTrue(service.verify(card).isCompletedExceptionally());
+    Assertions.assertTrue(service.verify(card).isCompletedExceptionally());
+    Assertions.assertTrue(service.verify(card).isCompletedExceptionally());
+    Assertions.assertEquals(2, calls.size());
+    Assertions.assertEquals(2, meterRegistry.get("cards.issuer.verification")
+        .tag("outcome", "failed").timer().count());
+    Assertions.assertEquals(1, meterRegistry.get("cards.issuer.verification")
+        .tag("outcome", "rejected").timer().count());
+  }
+
+  @Test
+  void testTimeout() {
+    IssuerProperties properties = new IssuerProperties();
+    properties.setTimeout(Duration.ofMillis(50));
+    IssuerVerificationService service = newService(properties, CompletableFuture::new);
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> service.verify(card).get());
+    Assertions.assertTrue(e.getCause() instanceof IssuerUnavailableException);
+  }
+
+  @Test
+  void testBulkhead() throws Exception {
+    IssuerProperties properties = new IssuerProperties();
+    properties.setMaxConcurrentCalls(1);
+    properties.setMaxWaitingCalls(1);
+    IssuerVerificationService service = newService(properties, CompletableFuture::new);
+    CompletableFuture<Boolean> inFlight = service.verify(card);
+    CompletableFuture<Boolean> waiting = service.verify(card);
+    CompletableFuture<Boolean> rejected = service.verify(card);
+    Assertions.assertEquals(1, calls.size());
+    Assertions.assertTrue(rejected.isCompletedExceptionally());
+    calls.get(0).complete(true);
+    Assertions.assertTrue(inFlight.get());
+    Assertions.assertEquals(2, calls.size());
+    calls.get(1).complete(false);
+    Assertions.assertFalse(waiting.get());
+  }
+
+  @Test
+  void testBulkheadRejectionDoesNotOpenCircuitBreaker() throws Exception {
+    IssuerProperties properties = new IssuerProperties();
+    properties.setFailureThreshold(1);
+    properties.setMaxConcurrentCalls(1);
+    properties.setMaxWaitingCalls(0);
+    IssuerVerificationService service = newService(properties, CompletableFuture::new);
+    CompletableFuture<Boolean> inFlight = service.verify(card);
+    Assertions.assertTrue(service.verify(card).isCompletedExceptionally());
+    Assertions.assertEquals(1, meterRegistry.get("cards.issuer.verification")
+        .tag("outcome", "rejected").timer().count());
+    calls.get(0).complete(true);
+    Assertions.assertTrue(inFlight.get());
+    CompletableFuture<Boolean> next = service.verify(card);
+    Assertions.assertEquals(2, calls.size());
+    calls.get(1).complete(true);
+    Assertions.assertTrue(next.get());
+  }
+
+  @Test
+  void testTimedOutCallReleasesItsPermit() throws Exception {
+    IssuerProperties properties = new IssuerProperties();
+    properties.setTimeout(Duration.ofMillis(50));
+    properties.setFailureThreshold(10);
+    properties.setMaxConcurrentCalls(2);
+    properties.setMaxWaitingCalls(0);
+    // The issuer never answers, yet every call gets a permit once the previous ones timed out.
+    IssuerVerificationService service = newService(properties, CompletableFuture::new);
+    for (int i = 0; i < 3; i++) {
+      CompletableFuture<Boolean> first = service.verify(card);
+      CompletableFuture<Boolean> second = service.verify(card);
+      ExecutionException e = Assertions.assertThrows(ExecutionException.class, first::get);
+      Assertions.assertFalse(e.getCause() instanceof BulkheadFullException);
+      e = Assertions.assertThrows(ExecutionException.class, second::get);
+      Assertions.assertFalse(e.getCause() instanceof BulkheadFullException);
+      // The calls are cancelled right after their permits are released.
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (!calls.stream().allMatch(CompletableFuture::isCancelled)
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+    }
+    Assertions.assertEquals(6, calls.size());
+    Assertions.assertTrue(calls.stream().allMatch(CompletableFuture::isCancelled));
+    Assertions.assertNull(meterRegistry.find("cards.issuer.verification")
+        .tag("outcome", "rejected").timer());
+  }
+
+  @Test
+  void testUnknownIssuer() throws Exception {
+    IssuerVerificationService service = newService(new IssuerProperties(),
+        () -> CompletableFuture.completedFuture(true));
+    Card visaCard = Card.builder().userId(1L).cardNumber("2").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    Assertions.assertFalse(service.verify(visaCard).get());
+    Assertions.assertTrue(service.verify(card).get());
+  }
+
+  private IssuerVerificationService newService(IssuerProperties properties,
+      Supplier<CompletableFuture<Boolean>> answer) {
+    IssuerVerifier verifier = new IssuerVerifier() {
+      @Override
+      public CardIssuer getIssuer() {
+        return CardIssuer.MASTERCARD;
+      }
+
+      @Override
+      public CompletableFuture<Boolean> verify(Card card) {
+        CompletableFuture<Boolean> call = answer.get();
+        calls.add(call);
+        return call;
+      }
+    };
+    return new IssuerVerificationService(Collections.singletonList(verifier), properties,
+        meterRegistry);
+  }
+}
@@ -0,0 +1,206 @@
+package in.amigoscorp.cards.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class RequestJournalTest {
+
+  private static final String[] ENDPOINTS = {"getAllCardsByUserId", "saveCard", "deleteCard"};
+
+  @TempDir
+  Path directory;
+
+  @AfterEach
+  void resetRequestAttributes() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void testRecordsTheRequests() throws Exception {
+    RequestJournal journal = journal(new RequestJournalProperties());
+    journal.start();
+    MockHttpServletRequest request = begin(journal, "getAllCardsByUserId");
+    journal.user(1L);
+    journal.cache(CacheOutcome.MISS);
+    journal.cache(CacheOutcome.HIT);
+    journal.end(request, 200);
+    request = begin(journal, "getAllCardsByUserIds");
+    // A later dispatch of the same request does not begin it again.
+    journal.begin(request, "getAllCardsByUserId");
+    journal.users(3);
+    journal.end(request, 400);
+    // Outside of a request.
+    journal.user(2L);
+    journal.end(request, 200);
+    journal.shutdown();
+
+    List<RequestEvent> events = journal.recent(10);
+    Assertions.assertEquals(2, events.size());
+    Assertions.assertEquals("getAllCardsByUserIds", events.get(0).getEndpoint());
+    Assertions.assertNull(events.get(0).getUserId());
+    Assertions.assertEquals(3, events.get(0).getUsers());
+    Assertions.assertEquals(CacheOutcome.NONE, events.get(0).getCache());
+    Assertions.assertEquals(400, events.get(0).getStatus());
+    Assertions.assertEquals(1L, events.get(1).getUserId());
+    Assertions.assertEquals(CacheOutcome.MISS, events.get(1).getCache());
+    Assertions.assertEquals(1, journal.recent(1).size());
+
+    List<String> lines = Files.readAllLines(directory.resolve("journal.jsonl"),
+        StandardCharsets.UTF_8);
+    Assertions.assertEquals(2, lines.size());
+    Assertions.assertTrue(lines.get(0).contains("\"endpoint\":\"getAllCardsByUserId\""));
+    Assertions.assertTrue(lines.get(0).contains("\"userId\":1,"));
+    Assertions.assertTrue(lines.get(1).contains("\"userId\":null,"));
+  }
+
+  @Test
+  void testWritesTheSampledAndFailedRequests() throws Exception {
+    RequestJournalProperties properties = new RequestJournalProperties();
+    properties.setSampleRate(0);
+    RequestJournal journal = journal(properties);
+    journal.start();
+    record(journal, 200);
+    record(journal, 500);
+    record(journal, 204);
+    journal.shutdown();
+
+    Assertions.assertEquals(3, journal.recent(10).size());
+    List<String> lines = Files.readAllLines(directory.resolve("journal.jsonl"),
+        StandardCharsets.UTF_8);
+    Assertions.assertEquals(1, lines.size());
+    Assertions.assertTrue(lines.get(0).contains("\"status\":500"));
+  }
+
+  @Test
+  void testRollsTheFileOver() throws Exception {
+    RequestJournalProperties properties = new RequestJournalProperties();
+    properties.setMaxFileSize(DataSize.ofBytes(300));
+    properties.setMaxHistory(2);
+    RequestJournal journal = journal(properties);
+    journal.start();
+    for (int i = 0; i < 20; i++) {
+      record(journal, 200);
+    }
+    journal.shutdown();
+
+    Assertions.assertTrue(Files.size(directory.resolve("journal.jsonl")) <= 300 + 200);
+    Assertions.assertTrue(Files.exists(directory.resolve("journal.jsonl.1")));
+    Assertions.assertTrue(Files.exists(directory.resolve("journal.jsonl.2")));
+    Assertions.assertFalse(Files.exists(directory.resolve("journal.jsonl.3")));
+  }
+
+  @Test
+  void testFullBufferDropsTheEvents() throws Exception {
+    RequestJournalProperties properties = new RequestJournalProperties();
+    properties.setBufferSize(2);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    properties.setPath(directory.resolve("journal.jsonl"));
+    RequestJournal journal = new RequestJournal(properties, meterRegistry);
+    for (int i = 0; i < 3; i++) {
+      record(journal, 200 + i);
+    }
+    Assertions.assertEquals(1, meterRegistry.get("cards.journal.dropped").counter().count());
+    journal.start();
+    journal.shutdown();
+
+    List<RequestEvent> events = journal.recent(10);
+    Assertions.assertEquals(2, events.size());
+    Assertions.assertEquals(201, events.get(0).getStatus());
+    Assertions.assertEquals(200, events.get(1).getStatus());
+  }
+
+  @Test
+  void testConcurrentProducers() throws Exception {
+    int producers = 8;
+    int eventsPerProducer = 10_000;
+    RequestJournalProperties properties = new RequestJournalProperties();
+    properties.setBufferSize(1_024);
+    properties.setRecentEvents(producers * eventsPerProducer);
+    properties.setSampleRate(0);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    properties.setPath(directory.resolve("journal.jsonl"));
+    RequestJournal journal = new RequestJournal(properties, meterRegistry);
+    journal.start();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int producer = 0; producer < producers; producer++) {
+      long first = (long) producer * eventsPerProducer;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        for (long userId = first; userId < first + eventsPerProducer; userId++) {
+          int endpoint = (int) (userId % ENDPOINTS.length);
+          MockHttpServletRequest request = begin(journal, ENDPOINTS[endpoint]);
+          journal.user(userId);
+          journal.end(request, 200 + endpoint);
+        }
+        RequestContextHolder.resetRequestAttributes();
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    journal.shutdown();
+
+    double recorded = meterRegistry.get("cards.journal.recorded").counter().count();
+    double dropped = meterRegistry.get("cards.journal.dropped").counter().count();
+    Assertions.assertEquals((double) producers * eventsPerProducer, recorded + dropped);
+    List<RequestEvent> events = journal.recent(producers * eventsPerProducer);
+    Assertions.assertEquals((long) recorded, events.size());
+    Set<Long> userIds = new HashSet<>();
+    long[] lastOfProducer = new long[producers];
+    Arrays.fill(lastOfProducer, Long.MAX_VALUE);
+    for (RequestEvent event : events) {
+      long userId = event.getUserId();
+      Assertions.assertTrue(userIds.add(userId), "Duplicate event " + userId);
+      // Every field of an event comes from the same request.
+      int endpoint = (int) (userId % ENDPOINTS.length);
+      Assertions.assertEquals(ENDPOINTS[endpoint], event.getEndpoint());
+      Assertions.assertEquals(1, event.getUsers());
+      Assertions.assertEquals(200 + endpoint, event.getStatus());
+      // The events of a producer are recorded in the order it ended them, the latest first.
+      int producer = (int) (userId / eventsPerProducer);
+      Assertions.assertTrue(userId < lastOfProducer[producer]);
+      lastOfProducer[producer] = userId;
+    }
+  }
+
+  private RequestJournal journal(RequestJournalProperties properties) {
+    properties.setPath(directory.resolve("journal.jsonl"));
+    return new RequestJournal(properties, new SimpleMeterRegistry());
+  }
+
+  private static MockHttpServletRequest begin(RequestJournal journal, String endpoint) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    journal.begin(request, endpoint);
+    return request;
+  }
+
+  private static void record(RequestJournal journal, int status) {
+    journal.end(begin(journal, "getCardStatus"), status);
+  }
+}
@@ -2,11 +2,14 @@ package in.amigoscorp.cards.repository;
 
 import in.amigoscorp.cards.entity.Card;
 import in.amigoscorp.cards.entity.CardIssuer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 @DataJpaTest
 class CardRepositoryTest {
@@ -24,6 +27,19 @@ class CardRepositoryTest {
     Assertions.assertEquals(card.getUserId(), cards.get(0).getUserId());
   }
 
+  @Test
+  void testFindAllByUserIdIn() {
+    cardRepository.save(Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
+        .expired(false).build());
+    cardRepository.save(Card.builder().userId(2L).cardNumber("2").cardIssuer(CardIssuer.VISA)
+        .expired(false).build());
+    cardRepository.save(Card.builder().userId(3L).cardNumber("3").cardIssuer(CardIssuer.VISA)
+        .expired(false).build());
+    List<Card> cards = cardRepository.findAllByUserIdIn(Arrays.asList(1L, 3L, 4L));
+    Assertions.assertEquals(2, cards.size());
+    Assertions.assertTrue(cards.stream().noneMatch(card -> card.getUserId() == 2L));
+  }
+
   @Test
   void testFindAllByUserIdAndExpiredFalse() {
     Card card1 = Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
@@ -51,4 +67,49 @@ class CardRepositoryTest {
     Assertions.assertEquals(card2.getUserId(), cards.get(0).getUserId());
     Assertions.assertEquals(card2.getCardNumber(), cards.get(0).getCardNumber());
   }
+
+  @Test
+  void testFindExpiryCandidatesAndMarkExpired() {
+    cardRepository.save(Card.builder().userId(1L).cardNumber("1").cardIssuer(CardIssuer.MASTERCARD)
+        .expiryMonth(12).expiryYear(2020).expired(false).build());
+    cardRepository.save(Card.builder().userId(1L).cardNumber("2").cardIssuer(CardIssuer.VISA)
+        .expiryMonth(1).expiryYear(2030).expired(false).build());
+    cardRepository.save(Card.builder().userId(2L).cardNumber("3").cardIssuer(CardIssuer.VISA)
+        .expiryMonth(6).expiryYear(21).expired(false).build());
+    cardRepository.save(Card.builder().userId(2L).cardNumber("4").cardIssuer(CardIssuer.VISA)
+        .expiryMonth(5).expiryYear(2019).expired(true).build());
+    List<CardKey> candidates = cardRepository.findExpiryCandidates(2000, 1, 2026, 10,
+        PageRequest.of(0, 10));
+    Assertions.assertEquals(1, candidates.size());
+    Assertions.assertEquals("1", candidates.get(0).getCardNumber());
+    Assertions.assertEquals(1L, candidates.get(0).getUserId());
+    List<CardKey> twoDigitCandidates = cardRepository.findExpiryCandidates(0, 1, 26, 10,
+        PageRequest.of(0, 10));
+    Assertions.assertEquals(1, twoDigitCandidates.size());
+    Assertions.assertEquals("3", twoDigitCandidates.get(0).getCardNumber());
+    Assertions.assertEquals(1, cardRepository.markExpired(Collections.singletonList("1")));
+    List<Card> cards = cardRepository.findAllByUserIdAndExpired(1L, true);
+    Assertions.assertEquals(1, cards.size());
+    Assertions.assertEquals("1", cards.get(0).getCardNumber());
+  }
+
+  @Test
+  void testFindByUserIdPagedByCardNumber() {
+    for (int i = 1; i <= 5; i++) {
+      cardRepository.save(Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+          .cardNumber(String.valueOf(i)).cardIssuer(CardIssuer.MASTERCARD).expired(false).build());
+    }
+    cardRepository.save(Card.builder().userId(2L).cardNumber("6").cardIssuer(CardIssuer.VISA)
+        .expired(false).build());
+    List<CardView> firstPage = cardRepository.findByUserIdOrderByCardNumberAsc(1L,
+        PageRequest.of(0, 2));
+    Assertions.assertEquals(2, firstPage.size());
+    Assertions.assertEquals("1", firstPage.get(0).getCardNumber());
+    Assertions.assertEquals("Srinivas Giduthuri", firstPage.get(0).getCardHolderName());
+    List<CardView> lastPage = cardRepository
+        .findByUserIdAndCardNumberGreaterThanOrderByCardNumberAsc(1L, "3", PageRequest.of(0, 5));
+    Assertions.assertEquals(2, lastPage.size());
+    Assertions.assertEquals("4", lastPage.get(0).getCardNumber());
+    Assertions.assertEquals("5", lastPage.get(1).getCardNumber());
+  }
 }
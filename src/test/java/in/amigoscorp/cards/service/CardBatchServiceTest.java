@@ -0,0 +1,202 @@
+package in.amigoscorp.cards.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.issuer.IssuerUnavailableException;
+import in.amigoscorp.cards.issuer.IssuerVerificationService;
+import in.amigoscorp.cards.service.CardBatchResult.Status;
+import in.amigoscorp.cards.shard.ShardRouter;
+import in.amigoscorp.cards.shard.ShardingProperties;
+import in.amigoscorp.cards.shard.ShardingProperties.Shard;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class CardBatchServiceTest {
+
+  private final CardService cardService = mock(CardService.class);
+  private final IssuerVerificationService issuerVerificationService =
+      mock(IssuerVerificationService.class);
+  private final CardWriter cardWriter = mock(CardWriter.class);
+  private final CardBatchProperties properties = new CardBatchProperties();
+  private CardBatchService cardBatchService;
+
+  CardBatchServiceTest() {
+    // A card number starting with 0 is invalid, the VISA cards are declined by the issuer and the
+    // cards held by "Down" cannot be verified.
+    doAnswer(invocation -> {
+      Card card = invocation.getArgument(0);
+      if (card.getCardNumber().startsWith("0")) {
+        return false;
+      }
+      card.setHashedCardNumber("XXXX" + card.getCardNumber());
+      return true;
+    }).when(cardService).secureCard(any());
+    doAnswer(invocation -> {
+      Card card = invocation.getArgument(0);
+      CompletableFuture<Boolean> valid = new CompletableFuture<>();
+      if ("Down".equals(card.getCardHolderName())) {
+        valid.completeExceptionally(new IssuerUnavailableException("The issuer is down."));
+      } else {
+        valid.complete(card.getCardIssuer() == CardIssuer.MASTERCARD);
+      }
+      return valid;
+    }).when(issuerVerificationService).verify(any());
+    properties.setBatchSize(2);
+    properties.setParallelism(2);
+    cardBatchService = new CardBatchService(cardService, issuerVerificationService, cardWriter,
+        new ShardRouter(new ShardingProperties()), properties);
+  }
+
+  @AfterEach
+  void shutdown() {
+    cardBatchService.shutdown();
+  }
+
+  @Test
+  void testStoresTheCardsInChunks() {
+    List<CardBatchResult> results = cardBatchService.addCards(Arrays.asList(card(1L, "11"),
+        card(1L, "12"), card(2L, "21"), card(2L, "22"), card(3L, "31")).iterator());
+
+    Assertions.assertEquals(5, results.size());
+    for (int i = 0; i < results.size(); i++) {
+      Assertions.assertEquals(i, results.get(i).getIndex());
+      Assertions.assertEquals(Status.ADDED, results.get(i).getStatus());
+    }
+    Assertions.assertEquals("XXXX31", results.get(4).getHashedCardNumber());
+    Assertions.assertEquals(Arrays.asList(Arrays.asList("11", "12"), Arrays.asList("21", "22"),
+        Collections.singletonList("31")), storedChunks());
+  }
+
+  @Test
+  void testReportsTheOutcomeOfEveryCard() {
+    Card visa = card(2L, "21");
+    visa.setCardIssuer(CardIssuer.VISA);
+    Card unverified = card(3L, "31");
+    unverified.setCardHolderName("Down");
+    List<CardBatchResult> results = cardBatchService.addCards(Arrays.asList(card(1L, "11"),
+        card(1L, "01"), visa, unverified).iterator());
+
+    Assertions.assertEquals(Arrays.asList(Status.ADDED, Status.INVALID, Status.INVALID,
+        Status.FAILED), statuses(results));
+    Assertions.assertNull(results.get(1).getHashedCardNumber());
+    Assertions.assertEquals("XXXX21", results.get(2).getHashedCardNumber());
+    Assertions.assertEquals(Long.valueOf(3L), results.get(3).getUserId());
+    Assertions.assertEquals(Collections.singletonList(Collections.singletonList("11")),
+        storedChunks());
+  }
+
+  @Test
+  void testStoresTheCardsOneByOneWhenTheChunkFails() {
+    Card bad = card(1L, "12");
+    doThrow(new IllegalStateException()).when(cardWriter).saveAll(anyList());
+    doThrow(new IllegalStateException()).when(cardWriter).save(bad);
+    List<CardBatchResult> results = cardBatchService.addCards(Arrays.asList(card(1L, "11"), bad,
+        card(2L, "21")).iterator());
+
+    Assertions.assertEquals(Arrays.asList(Status.ADDED, Status.FAILED, Status.ADDED),
+        statuses(results));
+    verify(cardWriter, times(3)).save(any());
+  }
+
+  @Test
+  void testStoresOnlyTheCardsOfTheFailedShardOneByOne() {
+    ShardingProperties sharding = new ShardingProperties();
+    sharding.setEnabled(true);
+    sharding.setShards(Arrays.asList(new Shard(), new Shard()));
+    ShardRouter shardRouter = new ShardRouter(sharding);
+    Card good = card(1L, "11");
+    Card bad = card(2L, "21");
+    while (shardRouter.shardOf(bad.getUserId()) == shardRouter.shardOf(good.getUserId())) {
+      bad.setUserId(bad.getUserId() + 1);
+    }
+    doThrow(new IllegalStateException()).when(cardWriter).saveAll(Arrays.asList(bad));
+    doThrow(new IllegalStateException()).when(cardWriter).save(bad);
+    cardBatchService.shutdown();
+    cardBatchService = new CardBatchService(cardService, issuerVerificationService, cardWriter,
+        shardRouter, properties);
+    List<CardBatchResult> results = cardBatchService.addCards(Arrays.asList(good, bad)
+        .iterator());
+
+    Assertions.assertEquals(Arrays.asList(Status.ADDED, Status.FAILED), statuses(results));
+    verify(cardWriter).saveAll(Arrays.asList(good));
+    verify(cardWriter, never()).save(good);
+    verify(cardWriter).save(bad);
+  }
+
+  @Test
+  void testStopsAtTheCardThatCannotBeRead() {
+    Iterator<Card> cards = Arrays.asList(card(1L, "11"), card(1L, "12"), card(2L, "21"), null)
+        .iterator();
+    Iterator<Card> unreadable = new Iterator<Card>() {
+      @Override
+      public boolean hasNext() {
+        return cards.hasNext();
+      }
+
+      @Override
+      public Card next() {
+        Card card = cards.next();
+        if (card == null) {
+          throw new IllegalArgumentException("Unexpected token");
+        }
+        return card;
+      }
+    };
+    List<CardBatchResult> results = cardBatchService.addCards(unreadable);
+
+    Assertions.assertEquals(Arrays.asList(Status.ADDED, Status.ADDED, Status.ADDED,
+        Status.FAILED), statuses(results));
+    Assertions.assertEquals(3, results.get(3).getIndex());
+    Assertions.assertEquals(Arrays.asList(Arrays.asList("11", "12"),
+        Collections.singletonList("21")), storedChunks());
+    verify(cardWriter, never()).save(any());
+  }
+
+  private List<List<String>> storedChunks() {
+    ArgumentCaptor<List<Card>> chunks = captor();
+    verify(cardWriter, atLeastOnce()).saveAll(chunks.capture());
+    return cardNumbers(chunks.getAllValues());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArgumentCaptor<List<Card>> captor() {
+    return ArgumentCaptor.forClass((Class<List<Card>>) (Class<?>) List.class);
+  }
+
+  private static List<List<String>> cardNumbers(List<List<Card>> chunks) {
+    List<List<String>> cardNumbers = new ArrayList<>();
+    for (List<Card> chunk : chunks) {
+      cardNumbers.add(chunk.stream().map(Card::getCardNumber).collect(Collectors.toList()));
+    }
+    return cardNumbers;
+  }
+
+  private static List<Status> statuses(List<CardBatchResult> results) {
+    return results.stream().map(CardBatchResult::getStatus).collect(Collectors.toList());
+  }
+
+  private static Card card(Long userId, String cardNumber) {
+    return Card.builder().userId(userId).cardHolderName("Srinivas Giduthuri")
+        .cardNumber(cardNumber).expiryMonth(12).expiryYear(99)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+  }
+}
@@ -0,0 +1,121 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.SweepWatermark;
+import in.amigoscorp.cards.repository.CardKey;
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.repository.SweepWatermarkRepository;
+import in.amigoscorp.cards.shard.ShardRouter;
+import in.amigoscorp.cards.shard.ShardingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+class CardExpirySweeperTest {
+
+  private final CardRepository cardRepository = Mockito.mock(CardRepository.class);
+  private final SweepWatermarkRepository watermarkRepository =
+      Mockito.mock(SweepWatermarkRepository.class);
+  private final CardsCache cardsCache = Mockito.mock(CardsCache.class);
+
+  @Test
+  void testSweepsFromTheWatermarkInChunks() {
+    watermark(2026, 3);
+    Mockito.doReturn(Arrays.asList(key("1", 1L), key("2", 2L)),
+            Collections.singletonList(key("3", 1L)))
+        .when(cardRepository).findExpiryCandidates(ArgumentMatchers.eq(2026),
+            ArgumentMatchers.eq(3), ArgumentMatchers.eq(2026), ArgumentMatchers.eq(6),
+            ArgumentMatchers.any());
+    Mockito.doReturn(Collections.emptyList())
+        .when(cardRepository).findExpiryCandidates(ArgumentMatchers.eq(26),
+            ArgumentMatchers.eq(3), ArgumentMatchers.eq(26), ArgumentMatchers.eq(6),
+            ArgumentMatchers.any());
+    Mockito.doReturn(2, 1).when(cardRepository).markExpired(ArgumentMatchers.anyCollection());
+
+    Assertions.assertEquals(3, sweeper(2, "2000-01").sweep(YearMonth.of(2026, 6)));
+    Mockito.verify(cardRepository).markExpired(Arrays.asList("1", "2"));
+    Mockito.verify(cardRepository).markExpired(Collections.singletonList("3"));
+    Mockito.verify(cardsCache, Mockito.times(2)).invalidate(1L);
+    Mockito.verify(cardsCache).invalidate(2L);
+    Mockito.verify(watermarkRepository).save(
+        new SweepWatermark(CardExpirySweeper.WATERMARK, 2026, 6));
+  }
+
+  @Test
+  void testStartsFromTheInitialWatermark() {
+    Mockito.doReturn(Optional.empty()).when(watermarkRepository)
+        .findById(CardExpirySweeper.WATERMARK);
+    Mockito.doReturn(Collections.emptyList()).when(cardRepository).findExpiryCandidates(
+        ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(),
+        ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+
+    Assertions.assertEquals(0, sweeper(2, "2020-01").sweep(YearMonth.of(2026, 6)));
+    Mockito.verify(cardRepository).findExpiryCandidates(ArgumentMatchers.eq(2020),
+        ArgumentMatchers.eq(1), ArgumentMatchers.eq(2026), ArgumentMatchers.eq(6),
+        ArgumentMatchers.any());
+    Mockito.verify(cardRepository).findExpiryCandidates(ArgumentMatchers.eq(20),
+        ArgumentMatchers.eq(1), ArgumentMatchers.eq(26), ArgumentMatchers.eq(6),
+        ArgumentMatchers.any());
+    Mockito.verify(cardsCache, Mockito.never()).invalidate(ArgumentMatchers.any());
+    Mockito.verify(watermarkRepository).save(
+        new SweepWatermark(CardExpirySweeper.WATERMARK, 2026, 6));
+  }
+
+  @Test
+  void testSkipsTheMonthsAlreadySwept() {
+    watermark(2026, 6);
+
+    Assertions.assertEquals(0, sweeper(2, "2000-01").sweep(YearMonth.of(2026, 6)));
+    Mockito.verifyNoInteractions(cardRepository, cardsCache);
+    Mockito.verify(watermarkRepository, Mockito.never()).save(ArgumentMatchers.any());
+  }
+
+  @Test
+  void testHasExpired() {
+    YearMonth now = YearMonth.of(2026, 6);
+    Assertions.assertTrue(CardExpirySweeper.hasExpired(card(5, 2026), now));
+    Assertions.assertTrue(CardExpirySweeper.hasExpired(card(12, 25), now));
+    Assertions.assertFalse(CardExpirySweeper.hasExpired(card(6, 2026), now));
+    Assertions.assertFalse(CardExpirySweeper.hasExpired(card(1, 27), now));
+    Assertions.assertFalse(CardExpirySweeper.hasExpired(card(null, 2020), now));
+  }
+
+  private CardExpirySweeper sweeper(int chunkSize, String initialWatermark) {
+    CardExpirySweeperProperties properties = new CardExpirySweeperProperties();
+    properties.setChunkSize(chunkSize);
+    properties.setInitialWatermark(initialWatermark);
+    return new CardExpirySweeper(cardRepository, watermarkRepository, cardsCache,
+        new ShardRouter(new ShardingProperties()), properties, new SimpleMeterRegistry());
+  }
+
+  private void watermark(int year, int month) {
+    Mockito.doReturn(Optional.of(new SweepWatermark(CardExpirySweeper.WATERMARK, year, month)))
+        .when(watermarkRepository).findById(CardExpirySweeper.WATERMARK);
+  }
+
+  private static CardKey key(String cardNumber, Long userId) {
+    return new CardKey() {
+      @Override
+      public String getCardNumber() {
+        return cardNumber;
+      }
+
+      @Override
+      public Long getUserId() {
+        return userId;
+      }
+    };
+  }
+
+  private static Card card(Integer expiryMonth, Integer expiryYear) {
+    return Card.builder().userId(1L).cardNumber("1").expiryMonth(expiryMonth)
+        .expiryYear(expiryYear).expired(false).build();
+  }
+}
@@ -0,0 +1,136 @@
+package in.amigoscorp.cards.service;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.shard.ShardRouter;
+import in.amigoscorp.cards.shard.ShardingProperties;
+import in.amigoscorp.cards.shard.ShardingProperties.Shard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CardGroupCommitterTest {
+
+  private final CardWriter cardWriter = mock(CardWriter.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private CardGroupCommitter committer;
+
+  @AfterEach
+  void shutdown() throws InterruptedException {
+    committer.shutdown();
+  }
+
+  @Test
+  void testConcurrentCardsAreCommittedTogether() throws Exception {
+    committer = committer(4, Duration.ofSeconds(1));
+    List<Card> cards = new ArrayList<>();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (long userId = 0; userId < 4; userId++) {
+      Card card = Card.builder().userId(userId).cardNumber(Long.toString(userId)).build();
+      cards.add(card);
+      futures.add(committer.submit(card));
+    }
+    for (CompletableFuture<Void> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    verify(cardWriter).saveAll(cards);
+    Assertions.assertEquals(4, meterRegistry.get("cards.group.commit.size").summary()
+        .totalAmount());
+    Assertions.assertEquals(1, meterRegistry.get("cards.group.commit.size").summary().count());
+  }
+
+  @Test
+  void testGroupIsCommittedAfterTheMaximumDelay() throws Exception {
+    committer = committer(100, Duration.ofMillis(10));
+    Card card = Card.builder().userId(1L).cardNumber("1").build();
+    committer.submit(card).get(5, TimeUnit.SECONDS);
+    verify(cardWriter).saveAll(Arrays.asList(card));
+  }
+
+  @Test
+  void testBadCardOnlyFailsItself() throws Exception {
+    Card good = Card.builder().userId(1L).cardNumber("1").build();
+    Card bad = Card.builder().userId(2L).cardNumber("2").build();
+    doThrow(new IllegalStateException("constraint violation")).when(cardWriter).saveAll(anyList());
+    doThrow(new IllegalStateException("constraint violation")).when(cardWriter).save(bad);
+    committer = committer(2, Duration.ofSeconds(1));
+    CompletableFuture<Void> goodFuture = committer.submit(good);
+    CompletableFuture<Void> badFuture = committer.submit(bad);
+
+    goodFuture.get(5, TimeUnit.SECONDS);
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> badFuture.get(5, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+    verify(cardWriter, times(1)).save(good);
+    Assertions.assertEquals(1, meterRegistry.get("cards.group.commit.failures").counter()
+        .count());
+  }
+
+  @Test
+  void testCardsSubmittedOnShutdownAreRejected() throws Exception {
+    committer = committer(100, Duration.ofMillis(10));
+    committer.shutdown();
+    CompletableFuture<Void> future = committer.submit(Card.builder().userId(1L).cardNumber("1")
+        .build());
+
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> future.get(5, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+    verify(cardWriter, never()).saveAll(anyList());
+  }
+
+  @Test
+  void testFailedShardDoesNotRewriteTheOthers() throws Exception {
+    ShardingProperties sharding = new ShardingProperties();
+    sharding.setEnabled(true);
+    sharding.setShards(Arrays.asList(new Shard(), new Shard()));
+    ShardRouter shardRouter = new ShardRouter(sharding);
+    Card good = Card.builder().userId(1L).cardNumber("1").build();
+    Card bad = Card.builder().userId(2L).cardNumber("2").build();
+    while (shardRouter.shardOf(bad.getUserId()) == shardRouter.shardOf(good.getUserId())) {
+      bad.setUserId(bad.getUserId() + 1);
+    }
+    doThrow(new IllegalStateException("constraint violation")).when(cardWriter)
+        .saveAll(Arrays.asList(bad));
+    doThrow(new IllegalStateException("constraint violation")).when(cardWriter).save(bad);
+    committer = committer(2, Duration.ofSeconds(1), shardRouter);
+    CompletableFuture<Void> goodFuture = committer.submit(good);
+    CompletableFuture<Void> badFuture = committer.submit(bad);
+
+    goodFuture.get(5, TimeUnit.SECONDS);
+    Assertions.assertThrows(ExecutionException.class, () -> badFuture.get(5, TimeUnit.SECONDS));
+    verify(cardWriter).saveAll(Arrays.asList(good));
+    verify(cardWriter, never()).save(good);
+    verify(cardWriter).save(bad);
+  }
+
+  private CardGroupCommitter committer(int maxBatchSize, Duration maxDelay) {
+    return committer(maxBatchSize, maxDelay, new ShardRouter(new ShardingProperties()));
+  }
+
+  private CardGroupCommitter committer(int maxBatchSize, Duration maxDelay,
+      ShardRouter shardRouter) {
+    CardGroupCommitProperties properties = new CardGroupCommitProperties();
+    properties.setMaxBatchSize(maxBatchSize);
+    properties.setMaxDelay(maxDelay);
+    CardGroupCommitter committer = new CardGroupCommitter(cardWriter, shardRouter, properties,
+        meterRegistry);
+    committer.start();
+    return committer;
+  }
+}
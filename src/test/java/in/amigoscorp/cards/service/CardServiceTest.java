@@ -2,33 +2,46 @@ package in.amigoscorp.cards.service;
 
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardChangeType;
 import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.event.CardChanged;
+import in.amigoscorp.cards.event.InMemoryCardChangeSink;
 import in.amigoscorp.cards.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@ActiveProfiles("test")
+@SpringBootTest(properties = "cards.cache.snapshot.enabled=false")
 class CardServiceTest {
 
   @Autowired
   private CardService cardService;
   @MockBean
   private CardRepository cardRepository;
+  @Autowired
+  private MeterRegistry meterRegistry;
+  @Autowired
+  private InMemoryCardChangeSink cardChangeSink;
 
   @Test
   void testGetAllCardsByUserId() {
     Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
-        .cardNumber("1234567890123456").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardNumber("5555555555554444").expiryMonth(12).expiryYear(99).cvv(123)
         .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
     doReturn(Collections.singletonList(card)).when(cardRepository).findAllByUserId(1L);
     doReturn(card).when(cardRepository).save(card);
@@ -38,10 +51,29 @@ class CardServiceTest {
     Assertions.assertSame(card, cards.get(0));
   }
 
+  @Test
+  void testGetAllCardsByUserIdIsTimed() {
+    doReturn(Collections.emptyList()).when(cardRepository).findAllByUserId(2L);
+    cardService.getAllCardsByUserId(2L);
+    Assertions.assertTrue(meterRegistry.get(CardService.SERVICE_TIMER)
+        .tag("method", "getAllCardsByUserId").timer().count() > 0);
+  }
+
+  @Test
+  void testGetAllCardsJsonByUserId() {
+    Card card = Card.builder().userId(3L).cardNumber("3").cardIssuer(CardIssuer.VISA)
+        .expired(false).build();
+    doReturn(Collections.singletonList(card)).when(cardRepository).findAllByUserId(3L);
+    byte[] json = cardService.getAllCardsJsonByUserId(3L);
+    Assertions.assertSame(json, cardService.getAllCardsJsonByUserId(3L));
+    doReturn(Collections.emptyList()).when(cardRepository).findAllByUserId(4L);
+    Assertions.assertNull(cardService.getAllCardsJsonByUserId(4L));
+  }
+
   @Test
   void testAddCard() {
     Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
-        .cardNumber("1234567890123456").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardNumber("5555555555554444").expiryMonth(12).expiryYear(99).cvv(123)
         .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
     doReturn(card).when(cardRepository).save(card);
     boolean isCardAdded = cardService.addCard(card);
@@ -51,7 +83,7 @@ class CardServiceTest {
   @Test
   void testAddVisaCard() {
     Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
-        .cardNumber("1234567890123456").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardNumber("4111111111111111").expiryMonth(12).expiryYear(99).cvv(123)
         .cardIssuer(CardIssuer.VISA).expired(false).build();
     doReturn(card).when(cardRepository).save(card);
     boolean isCardAdded = cardService.addCard(card);
@@ -68,4 +100,48 @@ class CardServiceTest {
     Assertions.assertTrue(isCardDeleted);
   }
 
+  @Test
+  void testCardChangesAreStreamedInOrder() throws InterruptedException {
+    Card card = Card.builder().userId(17L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("5555555555554444").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+    doReturn(card).when(cardRepository).save(card);
+    doNothing().when(cardRepository).delete(card);
+    Assertions.assertTrue(cardService.addCard(card));
+    Assertions.assertTrue(cardService.deleteCard(card));
+
+    List<CardChanged> events = Collections.emptyList();
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (events.size() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      events = cardChangeSink.events().stream()
+          .filter(event -> Long.valueOf(17L).equals(event.getUserId()))
+          .collect(Collectors.toList());
+    }
+    Assertions.assertEquals(2, events.size());
+    Assertions.assertEquals(CardChangeType.ADDED, events.get(0).getType());
+    Assertions.assertEquals(CardChangeType.REMOVED, events.get(1).getType());
+    Assertions.assertEquals(card.getCardNumber(), events.get(1).getCardNumber());
+    Assertions.assertTrue(events.get(0).getId() < events.get(1).getId());
+  }
+
+  @Test
+  void testAddCardWithInvalidCardNumber() {
+    Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("5555555555554445").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+    boolean isCardAdded = cardService.addCard(card);
+    Assertions.assertFalse(isCardAdded);
+    verify(cardRepository, never()).save(card);
+  }
+
+  @Test
+  void testAddCardWithMismatchedIssuer() {
+    Card card = Card.builder().userId(1L).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("4111111111111111").expiryMonth(12).expiryYear(99).cvv(123)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+    boolean isCardAdded = cardService.addCard(card);
+    Assertions.assertFalse(isCardAdded);
+    Assertions.assertEquals(CardIssuer.VISA, card.getCardIssuer());
+  }
 }
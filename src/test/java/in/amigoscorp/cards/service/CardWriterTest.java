@@ -0,0 +1,99 @@
+package in.amigoscorp.cards.service;
+
+import in.amigoscorp.cards.cache.CardsCache;
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"cards.cache.snapshot.enabled=false",
+    "cards.expiry-sweeper.enabled=false"})
+class CardWriterTest {
+
+  @Autowired
+  private CardWriter cardWriter;
+  @Autowired
+  private CardRepository cardRepository;
+  @Autowired
+  private CardsCache cardsCache;
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  void testInsertsTheCardsReportedAbsent() {
+    double absent = lookups("absent");
+    cardWriter.saveAll(Arrays.asList(card(31L, "writer-1", "A"), card(31L, "writer-2", "A")));
+    Assertions.assertEquals(absent + 2, lookups("absent"));
+    Assertions.assertEquals(2, cardRepository.findAllByUserId(31L).size());
+  }
+
+  @Test
+  void testMergesTheCardsAddedAgain() {
+    cardWriter.save(card(32L, "writer-3", "A"));
+    double present = lookups("present");
+    cardWriter.saveAll(Arrays.asList(card(32L, "writer-3", "B"), card(32L, "writer-4", "B"),
+        card(32L, "writer-4", "C")));
+    Assertions.assertEquals(present + 2, lookups("present"));
+    List<Card> cards = cardRepository.findAllByUserId(32L);
+    Assertions.assertEquals(2, cards.size());
+    Assertions.assertTrue(cards.stream().noneMatch(card -> "A".equals(card.getCardHolderName())));
+  }
+
+  @Test
+  void testMergesTheCardsStoredBehindTheFilter() {
+    cardRepository.save(card(33L, "writer-5", "A"));
+    double stale = meterRegistry.get("cards.card.filter.stale").counter().count();
+    cardWriter.save(card(33L, "writer-5", "B"));
+    Assertions.assertEquals(stale + 1,
+        meterRegistry.get("cards.card.filter.stale").counter().count());
+    List<Card> cards = cardRepository.findAllByUserId(33L);
+    Assertions.assertEquals(1, cards.size());
+    Assertions.assertEquals("B", cards.get(0).getCardHolderName());
+  }
+
+  @Test
+  void testFlagsTheCardsStoredExpired() {
+    Card twoDigitYear = card(34L, "writer-6", "A");
+    twoDigitYear.setExpiryYear(1);
+    Card fourDigitYear = card(34L, "writer-7", "A");
+    fourDigitYear.setExpiryYear(2001);
+    cardWriter.saveAll(Arrays.asList(twoDigitYear, fourDigitYear, card(34L, "writer-8", "A")));
+    List<Card> cards = cardRepository.findAllByUserId(34L);
+    Assertions.assertEquals(3, cards.size());
+    for (Card card : cards) {
+      Assertions.assertEquals(!"writer-8".equals(card.getCardNumber()), card.isExpired());
+    }
+  }
+
+  @Test
+  void testPatchesTheCachedCards() throws Exception {
+    Assertions.assertTrue(cardsCache.get(35L).isEmpty());
+    Card card = card(35L, "writer-9", "A");
+    cardWriter.save(card);
+    Assertions.assertEquals(1, cardsCache.get(35L).size());
+    cardWriter.delete(card);
+    Assertions.assertTrue(cardsCache.get(35L).isEmpty());
+  }
+
+  private double lookups(String result) {
+    return meterRegistry.get("cards.card.filter.lookups").tag("result", result).counter()
+        .count();
+  }
+
+  private static Card card(Long userId, String cardNumber, String cardHolderName) {
+    return Card.builder().userId(userId).cardHolderName(cardHolderName).cardNumber(cardNumber)
+        .hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12).expiryYear(99)
+        .cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+  }
+}
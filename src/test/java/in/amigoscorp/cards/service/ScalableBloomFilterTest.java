@@ -0,0 +1,44 @@
+package in.amigoscorp.cards.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ScalableBloomFilterTest {
+
+  @Test
+  void testGrowsWithoutFalseNegatives() {
+    ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 2, 0.5);
+    for (int i = 0; i < 20_000; i++) {
+      filter.put("stored-" + i);
+    }
+    for (int i = 0; i < 20_000; i++) {
+      Assertions.assertTrue(filter.mightContain("stored-" + i));
+    }
+    Assertions.assertTrue(filter.sliceCount() > 1);
+    Assertions.assertEquals(20_000, filter.approximateSize(), 20_000 * 0.05);
+    Assertions.assertTrue(filter.bytes() > 0);
+  }
+
+  @Test
+  void testFalsePositiveRateStaysBounded() {
+    ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 2, 0.5);
+    for (int i = 0; i < 20_000; i++) {
+      filter.put("stored-" + i);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (filter.mightContain("absent-" + i)) {
+        falsePositives++;
+      }
+    }
+    // The bound of the whole chain is 0.01 / (1 - 0.5).
+    Assertions.assertTrue(falsePositives / 100_000.0 < 0.02, "false positives " + falsePositives);
+    Assertions.assertTrue(filter.expectedFpp() < 0.02);
+  }
+
+  @Test
+  void testRejectsLooseningFilters() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new ScalableBloomFilter(1_000, 0.01, 2, 1));
+  }
+}
@@ -0,0 +1,41 @@
+package in.amigoscorp.cards.shard;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class JumpConsistentHashTest {
+
+  private static final int KEYS = 100_000;
+
+  @Test
+  void testKeysSpreadEvenly() {
+    int[] counts = new int[4];
+    for (long key = 0; key < KEYS; key++) {
+      counts[JumpConsistentHash.bucket(key, counts.length)]++;
+    }
+    for (int count : counts) {
+      Assertions.assertEquals(KEYS / counts.length, count, KEYS / counts.length * 0.05);
+    }
+  }
+
+  @Test
+  void testAddingBucketOnlyMovesKeysToIt() {
+    int moved = 0;
+    for (long key = 0; key < KEYS; key++) {
+      int before = JumpConsistentHash.bucket(key, 4);
+      int after = JumpConsistentHash.bucket(key, 5);
+      if (before != after) {
+        Assertions.assertEquals(4, after);
+        moved++;
+      }
+    }
+    Assertions.assertEquals(KEYS / 5, moved, KEYS / 5 * 0.05);
+  }
+
+  @Test
+  void testSingleBucket() {
+    Assertions.assertEquals(0, JumpConsistentHash.bucket(42, 1));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> JumpConsistentHash.bucket(42, 0));
+  }
+}
@@ -0,0 +1,106 @@
+package in.amigoscorp.cards.shard;
+
+import in.amigoscorp.cards.entity.Card;
+import in.amigoscorp.cards.entity.CardIssuer;
+import in.amigoscorp.cards.repository.CardRepository;
+import in.amigoscorp.cards.service.CardWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"cards.cache.snapshot.enabled=false",
+    "cards.expiry-sweeper.enabled=false", "cards.sharding.enabled=true",
+    "cards.sharding.shards[0].url=" + ShardRoutingTest.URL + "0;DB_CLOSE_DELAY=-1",
+    "cards.sharding.shards[0].username=sa",
+    "cards.sharding.shards[1].url=" + ShardRoutingTest.URL + "1;DB_CLOSE_DELAY=-1",
+    "cards.sharding.shards[1].username=sa",
+    "cards.sharding.shards[2].url=" + ShardRoutingTest.URL + "2;DB_CLOSE_DELAY=-1",
+    "cards.sharding.shards[2].username=sa",
+    "spring.jpa.hibernate.ddl-auto=create-drop"})
+class ShardRoutingTest {
+
+  static final String URL = "jdbc:h2:mem:shard-routing-test-";
+
+  @Autowired
+  private CardWriter cardWriter;
+  @Autowired
+  private CardRepository cardRepository;
+  @Autowired
+  private ShardRouter shardRouter;
+  @Autowired
+  private ShardRebalancer shardRebalancer;
+
+  @Test
+  void testCardsLiveOnTheShardOfTheirUser() {
+    List<Card> cards = new ArrayList<>();
+    List<Long> userIds = new ArrayList<>();
+    for (long userId = 1_000; userId < 1_030; userId++) {
+      cards.add(card(userId));
+      userIds.add(userId);
+    }
+    cardWriter.saveAll(cards);
+
+    boolean[] used = new boolean[shardRouter.shardCount()];
+    for (Long userId : userIds) {
+      int shard = shardRouter.shardOf(userId);
+      used[shard] = true;
+      for (int i = 0; i < shardRouter.shardCount(); i++) {
+        Assertions.assertEquals(i == shard ? 1 : 0, count(i, userId));
+      }
+      Assertions.assertEquals(1, cardRepository.findAllByUserId(userId).size());
+    }
+    for (boolean shard : used) {
+      Assertions.assertTrue(shard);
+    }
+    Assertions.assertEquals(userIds.size(), cardRepository.findAllByUserIdIn(userIds).size());
+  }
+
+  @Test
+  void testCallWithoutShardIsRejected() {
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> cardRepository.findActiveUserIds(PageRequest.of(0, 10)));
+    Assertions.assertNotNull(shardRouter.callOnShard(0,
+        () -> cardRepository.findActiveUserIds(PageRequest.of(0, 10))));
+  }
+
+  @Test
+  void testRebalanceMovesMisplacedUsers() {
+    long userId = 2_000;
+    int shard = shardRouter.shardOf(userId);
+    int misplaced = (shard + 1) % shardRouter.shardCount();
+    jdbc(misplaced).update("insert into card (card_number, user_id, card_issuer, expired)"
+        + " values (?, ?, ?, ?)", "misplaced-" + userId, userId, CardIssuer.VISA.ordinal(), false);
+    Assertions.assertTrue(cardRepository.findAllByUserId(userId).isEmpty());
+
+    Assertions.assertTrue(shardRebalancer.rebalance() >= 1);
+    Assertions.assertEquals(0, count(misplaced, userId));
+    Assertions.assertEquals(1, count(shard, userId));
+    Assertions.assertEquals(1, cardRepository.findAllByUserId(userId).size());
+  }
+
+  private static Card card(long userId) {
+    return Card.builder().userId(userId).cardHolderName("Srinivas Giduthuri")
+        .cardNumber("shard-" + userId).hashedCardNumber("XXXXXXXXXXXX4444").expiryMonth(12)
+        .expiryYear(99).cardIssuer(CardIssuer.MASTERCARD).expired(false).build();
+  }
+
+  private static int count(int shard, long userId) {
+    return jdbc(shard).queryForObject("select count(*) from card where user_id = ?",
+        Integer.class, userId);
+  }
+
+  private static JdbcTemplate jdbc(int shard) {
+    return new JdbcTemplate(new DriverManagerDataSource(URL + shard, "sa", ""));
+  }
+}